@@ -0,0 +1,37 @@
+package main.simulation;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+
+	/**Runs the JMH benchmarks in this module with the GC profiler attached,
+	 * so every result comes with an allocation rate (gc.alloc.rate.norm is
+	 * bytes per operation). Arguments are the usual JMH command line, so
+	 * regular expressions select benchmarks (all of them are run when none
+	 * are given) and options such as -p engine=0 override parameters.
+	 *
+	 * bench/pom.xml compiles this module together with src/ and simd/, runs
+	 * the JMH annotation processor and packages everything into
+	 * bench/target/benchmarks.jar with this class as its entry point.
+	 */
+
+	public static final long SEED = 1L; // every benchmark builds its galaxy from this seed
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions command = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(command);
+		if (command.getIncludes().isEmpty()) {
+			options.include("main\\.simulation\\..*Benchmark");
+		}
+		options.addProfiler(GCProfiler.class);
+		options.jvmArgsAppend("--add-modules", "jdk.incubator.vector");
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,63 @@
+package main.simulation;
+
+import java.util.concurrent.TimeUnit;
+import main.gui.Gradient;
+import main.laws.Simulation;
+import main.objects.PhysicsNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import javafx.scene.paint.Color;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+	/**Single calls of the innermost operations: one pairwise gravity update
+	 * and one temperature to color lookup. The kelvin index walks the whole
+	 * gradient so the lookup is not measured at a single position.
+	 */
+
+	private Galaxy galaxy;
+	private PhysicsNode target;
+	private PhysicsNode source;
+	private int kelvin = 0;
+
+	@Setup
+	public void setUp() {
+		Gradient.resetSpectra();
+		galaxy = new Galaxy(new Simulation(1, BenchmarkMain.SEED));
+		target = galaxy.get(1);
+		source = galaxy.get(0);
+	}
+
+	@TearDown
+	public void tearDown() {
+		galaxy.getPool().shutdown();
+	}
+
+	@Benchmark
+	public PhysicsNode applyForceFrom() {
+		target.applyForceFrom(source);
+		return target;
+	}
+
+	@Benchmark
+	public Color getColor() {
+		kelvin = (kelvin + 1) % Gradient.GRAD_SCALE;
+		return Gradient.getColor(kelvin);
+	}
+
+}
@@ -0,0 +1,70 @@
+package main.simulation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import main.gui.Gradient;
+import main.laws.Simulation;
+import main.objects.Poly;
+import main.objects.Vector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+	/**The per-frame work on the render thread before anything is drawn:
+	 * projecting and depth sorting every polygon, and rebuilding the transit
+	 * lines. Both read the frame on screen, which is captured once from a
+	 * seeded galaxy and shown with the default camera on a 1280x720 canvas.
+	 */
+
+	@Param({"650", "10000"})
+	private int bodies;
+
+	private Galaxy galaxy;
+	private Vector camera;
+
+	@Setup
+	public void setUp() {
+		Gradient.resetSpectra();
+		galaxy = new Galaxy(new Simulation(bodies - 1, BenchmarkMain.SEED));
+		Snapshot frame = new Snapshot();
+		frame.capture(galaxy, 0, 0);
+		galaxy.showFrame(frame);
+
+		camera = Vector.defaultCamera();
+		camera.setPerspective2D(1280, 720);
+	}
+
+	@TearDown
+	public void tearDown() {
+		galaxy.getPool().shutdown();
+	}
+
+	@Benchmark
+	public List<Poly> getPolygons() {
+		return galaxy.getPolygons(camera);
+	}
+
+	@Benchmark
+	public Galaxy newTransits() {
+		galaxy.newTransits();
+		return galaxy;
+	}
+
+}
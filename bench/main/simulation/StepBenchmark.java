@@ -0,0 +1,68 @@
+package main.simulation;
+
+import java.util.concurrent.TimeUnit;
+import main.laws.Simulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StepBenchmark {
+
+	/**One Galaxy.updateAllObjects call, the whole physics step: gravity,
+	 * integration, the velocity clamp and the radiation pass. Paused steps
+	 * only run the radiation pass. The galaxy is rebuilt from the same seed
+	 * for every iteration so unpaused runs do not drift apart over time.
+	 *
+	 * engine is an index into Simulation.useGravityEngine, 0 is BruteForce
+	 * and 1 Barnes-Hut. The default, -1, picks BruteForce below TREE_FROM
+	 * bodies and Barnes-Hut from there, as the all-pairs engines take tens
+	 * of seconds per step at 100k bodies. Pass e.g. -p engine=0 to force one.
+	 */
+
+	private static final int TREE_FROM = 20000; // body count from which the default engine is Barnes-Hut
+
+	@Param({"650", "10000", "100000"})
+	private int bodies;
+
+	@Param({"true", "false"})
+	private boolean paused;
+
+	@Param({"-1"})
+	private int engine;
+
+	private Galaxy galaxy;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		// the central star is always added, so ask for one planet fewer
+		galaxy = new Galaxy(new Simulation(bodies - 1, BenchmarkMain.SEED));
+		galaxy.getSimulation().useGravityEngine(engine >= 0 ? engine : bodies < TREE_FROM ? 0 : 1);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		galaxy.getPool().shutdown();
+	}
+
+	@Benchmark
+	public void updateAllObjects() {
+		galaxy.updateAllObjects(paused);
+	}
+
+}
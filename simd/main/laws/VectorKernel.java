@@ -0,0 +1,93 @@
+package main.laws;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernel implements GravityEngine {
+
+	/**All-pairs gravity inner loop written against the JDK Vector API. Each
+	 * target body is compared against a full vector of source bodies at once
+	 * (4 doubles on AVX2, 8 on AVX-512).
+	 *
+	 * This class lives in its own source root, simd/, so that src/ compiles
+	 * without jdk.incubator.vector. Only SimdGravity touches it, by name,
+	 * when it is on the classpath and the module is present.
+	 */
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		for (int i=0; i<bodies.size(); i++) {
+			accumulate(bodies, i);
+		}
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		for (int t=0; t<count; t++) {
+			accumulate(bodies, targets[t]);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return String.format("SIMD (%d lanes)", SPECIES.length());
+	}
+
+	private static void accumulate(BodyStore bodies, int i) {
+		int n = bodies.size();
+		int upper = SPECIES.loopBound(n);
+		double[] x = bodies.x, y = bodies.y, z = bodies.z, m = bodies.mass;
+		double scale = Physics.scaleAU;
+		double G = Physics.G;
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+
+		DoubleVector xi = DoubleVector.broadcast(SPECIES, x[i]);
+		DoubleVector yi = DoubleVector.broadcast(SPECIES, y[i]);
+		DoubleVector zi = DoubleVector.broadcast(SPECIES, z[i]);
+		DoubleVector sx = zero, sy = zero, sz = zero;
+
+		int j = 0;
+		for (; j<upper; j+=SPECIES.length()) {
+			DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j).sub(xi);
+			DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j).sub(yi);
+			DoubleVector dz = DoubleVector.fromArray(SPECIES, z, j).sub(zi);
+			DoubleVector r = dx.mul(dx).add(dy.mul(dy)).add(dz.mul(dz)).sqrt().mul(scale);
+			DoubleVector g = DoubleVector.fromArray(SPECIES, m, j).mul(G).div(r.mul(r).mul(r));
+
+			// the body itself and coincident bodies give an infinite pull, drop those lanes
+			VectorMask<Double> finite = g.test(VectorOperators.IS_FINITE);
+			g = zero.blend(g, finite);
+
+			sx = sx.add(dx.mul(g));
+			sy = sy.add(dy.mul(g));
+			sz = sz.add(dz.mul(g));
+		}
+
+		double ax = sx.reduceLanes(VectorOperators.ADD);
+		double ay = sy.reduceLanes(VectorOperators.ADD);
+		double az = sz.reduceLanes(VectorOperators.ADD);
+
+		// remaining sources that do not fill a vector
+		for (; j<n; j++) {
+			if (j == i) {continue;}
+			double dx = x[j] - x[i];
+			double dy = y[j] - y[i];
+			double dz = z[j] - z[i];
+			double r = Math.sqrt(dx*dx + dy*dy + dz*dz) * scale;
+			double g = (G * m[j]) / (r * r * r);
+			if (Double.isInfinite(g)) {continue;}
+			ax += dx * g;
+			ay += dy * g;
+			az += dz * g;
+		}
+
+		bodies.ax[i] += ax;
+		bodies.ay[i] += ay;
+		bodies.az[i] += az;
+	}
+
+}
@@ -0,0 +1,319 @@
+package main.laws;
+
+import java.util.Arrays;
+
+public class BarnesHut implements GravityEngine {
+
+	/**Barnes-Hut octree gravity. The tree is rebuilt from body positions on
+	 * every step, each cell carries the total mass and mass-weighted centre of
+	 * its contents, and a cell that looks small enough from a body (cell width
+	 * over distance below the opening angle) is treated as a single mass.
+	 * Cells live in flat arrays that are reused between steps.
+	 */
+
+	public static final double DEFAULT_THETA = 0.5;
+	private static final int MAX_DEPTH = 48; // coincident bodies share a leaf past this depth
+
+	private double theta; // opening angle, 0 is exact and larger is faster
+
+	// body columns for the current step
+	private int count;
+	private double[] px, py, pz, pm;
+	private int[] bodyNext = new int[0]; // chains bodies that share a leaf
+
+	// octree cells, indexed by cell number, root is cell 0
+	private int cellCount;
+	private double[] cx, cy, cz, half; // geometric centre and half-width of each cell
+	private double[] mass, mx, my, mz; // total mass and centre of mass of each cell
+	private int[] child; // first of eight consecutive children, -1 if a leaf
+	private int[] body; // first body held by a leaf, -1 if empty
+	private int[] stack = new int[8 * MAX_DEPTH + 8]; // traversal stack
+	private final double[] result = new double[3]; // acceleration from the last walk
+
+	public BarnesHut() {
+		this(DEFAULT_THETA);
+	}
+
+	public BarnesHut(double theta) {
+		this.theta = theta;
+		allocateCells(64);
+	}
+
+	public double getTheta() {
+		return theta;
+	}
+
+	public void setTheta(double theta) {
+		this.theta = theta;
+	}
+
+	@Override
+	public String getName() {
+		return String.format("Barnes-Hut (%.2f)", theta);
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		load(bodies);
+		if (count == 0) {return;}
+		build();
+
+		for (int i=0; i<count; i++) {
+			double[] a = walk(i);
+			bodies.ax[i] += a[0];
+			bodies.ay[i] += a[1];
+			bodies.az[i] += a[2];
+		}
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		// the tree always holds every body, only the walks are restricted
+		load(bodies);
+		if (this.count == 0) {return;}
+		build();
+
+		for (int t=0; t<count; t++) {
+			int i = targets[t];
+			double[] a = walk(i);
+			bodies.ax[i] += a[0];
+			bodies.ay[i] += a[1];
+			bodies.az[i] += a[2];
+		}
+	}
+
+	@Override
+	public double potential(BodyStore bodies) {
+		// every pair is counted from both ends with the same opening rule, so halve the sum
+		load(bodies);
+		if (count == 0) {return 0;}
+		build();
+
+		double total = 0;
+		for (int i=0; i<count; i++) {
+			total += pm[i] * reach(i);
+		}
+		return -Physics.G * total / (2 * Physics.scaleAU);
+	}
+
+
+	/* ============================= */
+	/* ===== TREE CONSTRUCTION ===== */
+	/* ============================= */
+
+	private void load(BodyStore bodies) {
+		count = bodies.size();
+		px = bodies.x;
+		py = bodies.y;
+		pz = bodies.z;
+		pm = bodies.mass;
+		if (bodyNext.length < count) {
+			bodyNext = new int[count];
+		}
+	}
+
+	private void build() {
+		// bounding cube of all bodies becomes the root cell
+		double minX = px[0], minY = py[0], minZ = pz[0];
+		double maxX = minX, maxY = minY, maxZ = minZ;
+		for (int i=1; i<count; i++) {
+			minX = Math.min(minX, px[i]); maxX = Math.max(maxX, px[i]);
+			minY = Math.min(minY, py[i]); maxY = Math.max(maxY, py[i]);
+			minZ = Math.min(minZ, pz[i]); maxZ = Math.max(maxZ, pz[i]);
+		}
+		double size = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+
+		cellCount = 1;
+		cx[0] = (minX + maxX) / 2;
+		cy[0] = (minY + maxY) / 2;
+		cz[0] = (minZ + maxZ) / 2;
+		half[0] = size / 2 * 1.0001 + 1e-12; // pad so bodies on the boundary fall inside
+		child[0] = -1;
+		body[0] = -1;
+
+		for (int i=0; i<count; i++) {
+			insert(i);
+		}
+
+		// children always follow their parent, so a reverse sweep sums bottom-up
+		for (int c=cellCount-1; c>=0; c--) {
+			double m = 0, x = 0, y = 0, z = 0;
+			if (child[c] < 0) {
+				for (int b=body[c]; b>=0; b=bodyNext[b]) {
+					m += pm[b];
+					x += pm[b] * px[b];
+					y += pm[b] * py[b];
+					z += pm[b] * pz[b];
+				}
+			} else {
+				for (int k=child[c]; k<child[c]+8; k++) {
+					m += mass[k];
+					x += mass[k] * mx[k];
+					y += mass[k] * my[k];
+					z += mass[k] * mz[k];
+				}
+			}
+			mass[c] = m;
+			mx[c] = m > 0 ? x / m : cx[c];
+			my[c] = m > 0 ? y / m : cy[c];
+			mz[c] = m > 0 ? z / m : cz[c];
+		}
+	}
+
+	private void insert(int i) {
+		int c = 0;
+		int depth = 0;
+		while (true) {
+			if (child[c] >= 0) {
+				c = child[c] + octant(c, i);
+				depth++;
+			} else if (body[c] < 0) {
+				body[c] = i;
+				bodyNext[i] = -1;
+				return;
+			} else if (depth >= MAX_DEPTH) {
+				bodyNext[i] = body[c];
+				body[c] = i;
+				return;
+			} else {
+				// occupied leaf, push its body down one level and keep descending
+				int old = body[c];
+				body[c] = -1;
+				split(c);
+				int oc = child[c] + octant(c, old);
+				body[oc] = old;
+				bodyNext[old] = -1;
+			}
+		}
+	}
+
+	private void split(int c) {
+		if (cellCount + 8 > child.length) {
+			allocateCells(child.length * 2);
+		}
+		double h = half[c] / 2;
+		for (int k=0; k<8; k++) {
+			int n = cellCount + k;
+			cx[n] = cx[c] + ((k & 1) != 0 ? h : -h);
+			cy[n] = cy[c] + ((k & 2) != 0 ? h : -h);
+			cz[n] = cz[c] + ((k & 4) != 0 ? h : -h);
+			half[n] = h;
+			child[n] = -1;
+			body[n] = -1;
+		}
+		child[c] = cellCount;
+		cellCount += 8;
+	}
+
+	private int octant(int c, int i) {
+		return (px[i] >= cx[c] ? 1 : 0) | (py[i] >= cy[c] ? 2 : 0) | (pz[i] >= cz[c] ? 4 : 0);
+	}
+
+	private void allocateCells(int capacity) {
+		cx = grow(cx, capacity);
+		cy = grow(cy, capacity);
+		cz = grow(cz, capacity);
+		half = grow(half, capacity);
+		mass = grow(mass, capacity);
+		mx = grow(mx, capacity);
+		my = grow(my, capacity);
+		mz = grow(mz, capacity);
+		child = child == null ? new int[capacity] : Arrays.copyOf(child, capacity);
+		body = body == null ? new int[capacity] : Arrays.copyOf(body, capacity);
+	}
+
+	private static double[] grow(double[] a, int capacity) {
+		return a == null ? new double[capacity] : Arrays.copyOf(a, capacity);
+	}
+
+
+	/* ========================== */
+	/* ===== TREE TRAVERSAL ===== */
+	/* ========================== */
+
+	private double[] walk(int i) {
+		double ax = 0, ay = 0, az = 0;
+		double x = px[i], y = py[i], z = pz[i];
+
+		int sp = 0;
+		stack[sp++] = 0;
+		while (sp > 0) {
+			int c = stack[--sp];
+			if (mass[c] == 0) {continue;}
+
+			if (child[c] < 0) {
+				// leaf, sum its bodies exactly
+				for (int b=body[c]; b>=0; b=bodyNext[b]) {
+					if (b == i) {continue;}
+					double dx = px[b] - x, dy = py[b] - y, dz = pz[b] - z;
+					double g = pull(dx, dy, dz, pm[b]);
+					ax += dx * g; ay += dy * g; az += dz * g;
+				}
+				continue;
+			}
+
+			double dx = mx[c] - x, dy = my[c] - y, dz = mz[c] - z;
+			double dist = Math.sqrt(dx*dx + dy*dy + dz*dz);
+			if (2 * half[c] < theta * dist && !contains(c, x, y, z)) {
+				// far enough away to be treated as one mass at its centre
+				double g = pull(dx, dy, dz, mass[c]);
+				ax += dx * g; ay += dy * g; az += dz * g;
+			} else {
+				for (int k=child[c]; k<child[c]+8; k++) {
+					stack[sp++] = k;
+				}
+			}
+		}
+
+		result[0] = ax;
+		result[1] = ay;
+		result[2] = az;
+		return result;
+	}
+
+	private double reach(int i) {
+		// sum of m / d over every other body (AU), the potential walk to match walk
+		double sum = 0;
+		double x = px[i], y = py[i], z = pz[i];
+
+		int sp = 0;
+		stack[sp++] = 0;
+		while (sp > 0) {
+			int c = stack[--sp];
+			if (mass[c] == 0) {continue;}
+
+			if (child[c] < 0) {
+				for (int b=body[c]; b>=0; b=bodyNext[b]) {
+					if (b == i) {continue;}
+					double dx = px[b] - x, dy = py[b] - y, dz = pz[b] - z;
+					double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+					if (d > 0) {sum += pm[b] / d;}
+				}
+				continue;
+			}
+
+			double dx = mx[c] - x, dy = my[c] - y, dz = mz[c] - z;
+			double dist = Math.sqrt(dx*dx + dy*dy + dz*dz);
+			if (2 * half[c] < theta * dist && !contains(c, x, y, z)) {
+				sum += mass[c] / dist;
+			} else {
+				for (int k=child[c]; k<child[c]+8; k++) {
+					stack[sp++] = k;
+				}
+			}
+		}
+		return sum;
+	}
+
+	private boolean contains(int c, double x, double y, double z) {
+		return Math.abs(x - cx[c]) <= half[c] && Math.abs(y - cy[c]) <= half[c] && Math.abs(z - cz[c]) <= half[c];
+	}
+
+	private static double pull(double dx, double dy, double dz, double m) {
+		// same scaling as PhysicsNode.applyForceFrom: vector in grid units, distance in meters
+		double d = Math.sqrt(dx*dx + dy*dy + dz*dz) * Physics.scaleAU;
+		double g = (Physics.G * m) / (d * d * d);
+		return Double.isInfinite(g) ? 0 : g;
+	}
+
+}
@@ -0,0 +1,157 @@
+package main.laws;
+
+public class BlockTimestep implements Integrator {
+
+	/**Hierarchical power-of-two block timesteps. At the start of each macro
+	 * step every body is put on a rung r from its own timescale |v| / |a|, and
+	 * advances in steps of dt / 2^r. The macro step is cut into sub-steps of
+	 * the finest rung in use. All bodies drift on every sub-step, which is
+	 * cheap, but only the bodies whose own step ends on that sub-step get new
+	 * forces and a kick. Each body runs its own kick-drift-kick leapfrog, so
+	 * quiet outer planets cost one force evaluation per macro step while a
+	 * close encounter is resolved finely without slowing everyone else.
+	 *
+	 * The saving is counted in per-body force evaluations, which is what the
+	 * exact engines pay for. Tree and mesh engines rebuild their whole
+	 * structure on every force pass however few bodies it asks for. For them
+	 * the number of passes matters more, so it is reported as well.
+	 */
+
+	public static final int DEFAULT_MAX_RUNG = 8;
+	public static final double DEFAULT_ETA = 0.02;
+
+	private int maxRung; // finest allowed step is dt / 2^maxRung
+	private double eta; // fraction of a body's |v| / |a| timescale it may step
+
+	private int primed = -1; // body count the stored accelerations belong to
+	private int[] rung = new int[0]; // current rung of each body
+	private int[] active = new int[0]; // bodies due for new forces on a sub-step
+
+	private int deepestRung; // finest rung used in the last macro step
+	private int subSteps; // sub-steps in the last macro step
+	private int passes; // calls into the gravity engine in the last macro step, each a tree or mesh rebuild
+	private long evaluations; // force evaluations in the last macro step
+	private long savedEvaluations; // evaluations avoided against stepping everyone on the finest rung
+
+	public BlockTimestep() {
+		this(DEFAULT_MAX_RUNG, DEFAULT_ETA);
+	}
+
+	public BlockTimestep(int maxRung, double eta) {
+		this.maxRung = Math.max(0, Math.min(maxRung, 30));
+		this.eta = eta;
+	}
+
+	@Override
+	public void step(BodyStore bodies, GravityEngine gravity, double dt) {
+		int n = bodies.size();
+		if (rung.length < n) {
+			rung = new int[n];
+			active = new int[n];
+		}
+		passes = 0;
+		if (primed != n) {
+			bodies.clearAccelerations();
+			gravity.accumulate(bodies);
+			passes++;
+		}
+
+		assignRungs(bodies, dt);
+		subSteps = 1 << deepestRung;
+		double sub = dt / subSteps;
+		evaluations = 0;
+
+		for (int k=0; k<subSteps; k++) {
+			// opening half kick for bodies starting their own step
+			for (int i=0; i<n; i++) {
+				int stride = 1 << (deepestRung - rung[i]);
+				if (k % stride == 0) {
+					kick(bodies, i, sub * stride / 2);
+				}
+			}
+
+			bodies.drift(sub);
+
+			// closing half kick, with fresh forces, for bodies ending their own step
+			int count = 0;
+			for (int i=0; i<n; i++) {
+				int stride = 1 << (deepestRung - rung[i]);
+				if ((k + 1) % stride == 0) {
+					active[count++] = i;
+				}
+			}
+			bodies.clearAccelerations(active, count);
+			gravity.accumulate(bodies, active, count);
+			passes++;
+			for (int t=0; t<count; t++) {
+				int i = active[t];
+				kick(bodies, i, sub * (1 << (deepestRung - rung[i])) / 2);
+			}
+			evaluations += count;
+		}
+
+		savedEvaluations = (long) n * subSteps - evaluations;
+		primed = n;
+	}
+
+	private void assignRungs(BodyStore bodies, double dt) {
+		deepestRung = 0;
+		for (int i=0; i<bodies.size(); i++) {
+			double a = Math.sqrt(bodies.ax[i]*bodies.ax[i] + bodies.ay[i]*bodies.ay[i] + bodies.az[i]*bodies.az[i]);
+			double v = Math.sqrt(bodies.vx[i]*bodies.vx[i] + bodies.vy[i]*bodies.vy[i] + bodies.vz[i]*bodies.vz[i]);
+
+			// rung r is the coarsest step dt / 2^r within the body's own timescale
+			// bodies at rest (e.g. after Halt Physics) take one coarse step to pick up speed
+			int r = 0;
+			if (a > 0 && v > 0) {
+				double own = eta * v / a;
+				r = (int) Math.ceil(Math.log(dt / own) / Math.log(2));
+			}
+			r = Math.max(0, Math.min(r, maxRung));
+
+			rung[i] = r;
+			deepestRung = Math.max(deepestRung, r);
+		}
+	}
+
+	private static void kick(BodyStore bodies, int i, double dt) {
+		bodies.vx[i] += bodies.ax[i] * dt;
+		bodies.vy[i] += bodies.ay[i] * dt;
+		bodies.vz[i] += bodies.az[i] * dt;
+	}
+
+	public int getRung(int index) {
+		return rung[index];
+	}
+
+	public int getDeepestRung() {
+		return deepestRung;
+	}
+
+	public int getSubSteps() {
+		return subSteps;
+	}
+
+	public int getPasses() {
+		return passes;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public long getSavedEvaluations() {
+		return savedEvaluations;
+	}
+
+	@Override
+	public void reset() {
+		primed = -1;
+	}
+
+	@Override
+	public String getName() {
+		return "Block Timesteps";
+	}
+
+}
@@ -0,0 +1,233 @@
+package main.laws;
+
+import java.util.Arrays;
+
+public class BodyStore {
+
+	/**Structure-of-arrays storage for the physical state of every body in a
+	 * simulation. Each quantity is a contiguous primitive column indexed by
+	 * body number, so force and integration loops can run over plain arrays
+	 * without allocating. PhysicsNode objects are thin views over one index.
+	 *
+	 * Columns are exposed directly for kernels, but may be replaced when the
+	 * store grows, so they should not be held across a call to add().
+	 */
+
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private int size = 0;
+
+	public double[] x, y, z; // position (AU, scaled to the digital grid)
+	public double[] vx, vy, vz; // velocity (AU/s)
+	public double[] ax, ay, az; // summed gravitational acceleration (AU/s2)
+	public double[] mass; // mass (kg)
+	public double[] radius; // object radius (km)
+	public double[] kelvin; // temperature (k)
+	public double[] baseKelvin; // temperature energy scaling works from (k)
+	public double[] absorbed; // hottest temperature received from a star this pass (k)
+	public double[] albedo; // fraction of incoming radiation reflected
+	public double[] emissivity; // fraction of absorbed radiation re-emitted
+	public boolean[] star; // energy source if true, planet otherwise
+
+	public BodyStore() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public BodyStore(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	public int add(double x, double y, double z, double mass, double radius, double kelvin) {
+		if (size == this.x.length) {
+			allocate(size * 2);
+		}
+		int i = size++;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.z[i] = z;
+		this.vx[i] = 0;
+		this.vy[i] = 0;
+		this.vz[i] = 0;
+		this.ax[i] = 0;
+		this.ay[i] = 0;
+		this.az[i] = 0;
+		this.mass[i] = mass;
+		this.radius[i] = radius;
+		this.kelvin[i] = kelvin;
+		this.baseKelvin[i] = kelvin;
+		this.absorbed[i] = 0;
+		this.albedo[i] = 0;
+		this.emissivity[i] = 0;
+		this.star[i] = false;
+		return i;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void resize(int size) {
+		// set the body count directly for bulk loads, accelerations start cleared
+		// and every other column is left for the caller to fill
+		if (size > x.length) {
+			allocate(size);
+		}
+		this.size = size;
+		clearAccelerations();
+	}
+
+	public void clearAccelerations() {
+		Arrays.fill(ax, 0, size, 0);
+		Arrays.fill(ay, 0, size, 0);
+		Arrays.fill(az, 0, size, 0);
+	}
+
+	public void clearAccelerations(int[] targets, int count) {
+		for (int t=0; t<count; t++) {
+			int i = targets[t];
+			ax[i] = 0;
+			ay[i] = 0;
+			az[i] = 0;
+		}
+	}
+
+	public void kick(double dt) {
+		// change in velocity from the summed acceleration over dt seconds
+		for (int i=0; i<size; i++) {
+			vx[i] += ax[i] * dt;
+			vy[i] += ay[i] * dt;
+			vz[i] += az[i] * dt;
+		}
+	}
+
+	public void drift(double dt) {
+		// change in position from the current velocity over dt seconds
+		for (int i=0; i<size; i++) {
+			x[i] += vx[i] * dt;
+			y[i] += vy[i] * dt;
+			z[i] += vz[i] * dt;
+		}
+	}
+
+	public void clampVelocities(double limit) {
+		// hold each velocity component under limit, keeping its sign
+		for (int i=0; i<size; i++) {
+			if (!(Math.abs(vx[i]) < limit)) {vx[i] = limit * (vx[i] < 0 ? -1 : 1);}
+			if (!(Math.abs(vy[i]) < limit)) {vy[i] = limit * (vy[i] < 0 ? -1 : 1);}
+			if (!(Math.abs(vz[i]) < limit)) {vz[i] = limit * (vz[i] < 0 ? -1 : 1);}
+		}
+	}
+
+	public int compact(boolean[] removed, int[] remap) {
+		// drop the removed bodies, keeping the rest in order. remap receives each
+		// kept body's new index and -1 for removed ones, the new size is returned
+		int kept = 0;
+		for (int i=0; i<size; i++) {
+			if (removed[i]) {
+				remap[i] = -1;
+				continue;
+			}
+			remap[i] = kept;
+			if (kept != i) {
+				x[kept] = x[i]; y[kept] = y[i]; z[kept] = z[i];
+				vx[kept] = vx[i]; vy[kept] = vy[i]; vz[kept] = vz[i];
+				ax[kept] = ax[i]; ay[kept] = ay[i]; az[kept] = az[i];
+				mass[kept] = mass[i];
+				radius[kept] = radius[i];
+				kelvin[kept] = kelvin[i];
+				baseKelvin[kept] = baseKelvin[i];
+				absorbed[kept] = absorbed[i];
+				albedo[kept] = albedo[i];
+				emissivity[kept] = emissivity[i];
+				star[kept] = star[i];
+			}
+			kept++;
+		}
+		size = kept;
+		return kept;
+	}
+
+	public void applyForce(int i, int j) {
+		// add the acceleration of body i due to body j
+		// EVERYTING WITHIN THIS SCOPE MUST BE CALCULATED TO-SCALE, IN METERS
+
+		// AU distance between objects, used in each grav force and temperature calculations
+		double dx = x[j] - x[i];
+		double dy = y[j] - y[i];
+		double dz = z[j] - z[i];
+		double d = Math.sqrt(dx*dx + dy*dy + dz*dz) * Physics.scaleAU;
+
+		// gravitational acceleration between this and other object. N or kg/m3
+		// any number manipulated against g must be to scale!
+		// changelog 1-7-17: removed this.mass from numerator of g, because g is acceleration
+		// so mass is divided out (Constant.G * mass * o.getMass()) / Math.pow(d, 3) / mass
+		double g = (Physics.G * mass[j]) / Math.pow(d, 3);
+		if (Double.isInfinite(g)) {
+			g = 0;
+		}
+
+		// break down acceleration into its components
+		ax[i] += dx * g;
+		ay[i] += dy * g;
+		az[i] += dz * g;
+	}
+
+	public void applyTemp(int i, int s) {
+		// keep the hottest temperature planet i would reach from star s alone
+		if (star[i] || !star[s]) {return;}
+
+		double dx = x[i] - x[s];
+		double dy = y[i] - y[s];
+		double dz = z[i] - z[s];
+		// AU distance between objects, used in each grav force and temperature calculations
+		double d = Math.sqrt(dx*dx + dy*dy + dz*dz)*Physics.scaleAU;
+		
+		double sT = (int) kelvin[s];
+		double sR = radius[s]*1000.0; // convert to meters
+		double pA = albedo[i];
+		double pE = emissivity[i];
+		
+		double inner = sR * Math.sqrt( 1 - pA - pE / 2 );
+		double outer = inner / (2 * d);
+		int pT = (int) (Math.sqrt(outer) * sT);
+		
+		if (pT > absorbed[i]) {absorbed[i] = pT;}
+	}
+
+	public void applyEnergy(int i) {
+		// apply new temperature for planets only
+		if (!star[i]) {
+			kelvin[i] = absorbed[i];
+			absorbed[i] = 0;
+		}
+	}
+
+	private void allocate(int capacity) {
+		x = grow(x, capacity);
+		y = grow(y, capacity);
+		z = grow(z, capacity);
+		vx = grow(vx, capacity);
+		vy = grow(vy, capacity);
+		vz = grow(vz, capacity);
+		ax = grow(ax, capacity);
+		ay = grow(ay, capacity);
+		az = grow(az, capacity);
+		mass = grow(mass, capacity);
+		radius = grow(radius, capacity);
+		kelvin = grow(kelvin, capacity);
+		baseKelvin = grow(baseKelvin, capacity);
+		absorbed = grow(absorbed, capacity);
+		albedo = grow(albedo, capacity);
+		emissivity = grow(emissivity, capacity);
+		star = star == null ? new boolean[capacity] : Arrays.copyOf(star, capacity);
+	}
+
+	private static double[] grow(double[] column, int capacity) {
+		return column == null ? new double[capacity] : Arrays.copyOf(column, capacity);
+	}
+
+}
@@ -0,0 +1,39 @@
+package main.laws;
+
+public class BruteForce implements GravityEngine {
+
+	/**Exact all-pairs gravity. Every body sums the pull of every other body,
+	 * which is O(N^2) per step but serves as the reference for other engines.
+	 */
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		int n = bodies.size();
+		for (int i=0; i<n; i++) {
+			for (int j=0; j<n; j++) {
+				if (i != j) {
+					bodies.applyForce(i, j);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		int n = bodies.size();
+		for (int t=0; t<count; t++) {
+			int i = targets[t];
+			for (int j=0; j<n; j++) {
+				if (i != j) {
+					bodies.applyForce(i, j);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "Brute Force";
+	}
+
+}
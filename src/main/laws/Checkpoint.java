@@ -0,0 +1,172 @@
+package main.laws;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class Checkpoint {
+
+	/**Binary save and restore of a whole Simulation. The file is a small
+	 * header followed by one little-endian column per body quantity, laid out
+	 * exactly like the BodyStore. Columns are copied through memory maps of
+	 * the file with bulk buffer transfers. Each map covers at most CHUNK
+	 * bytes (1 GB), so long columns are copied in chunks.
+	 *
+	 * Restoring fills the store directly. Nothing is regenerated, and the
+	 * random generator is not touched. G, scaleAU, the time step and the
+	 * energy sources come back as they were saved. The file is checked, down
+	 * to every energy source index, before anything in the simulation changes.
+	 *
+	 * header: magic, version, bodies, sources, G, scaleAU, time step
+	 * then:   x y z vx vy vz mass radius kelvin baseKelvin absorbed albedo
+	 *         emissivity as doubles, star as bytes, sources as ints
+	 */
+
+	private static final int MAGIC = 0x474c5859; // "GLXY"
+	private static final int VERSION = 1;
+	private static final int HEADER = 64; // bytes, leaves room for later fields
+	private static final int DOUBLE_COLUMNS = 13;
+	private static final long CHUNK = 1L << 30; // bytes per map, a multiple of 8
+
+	public static void save(Simulation simulation, Path path) throws IOException {
+		BodyStore bodies = simulation.getBodyStore();
+		int n = bodies.size();
+		int sources = simulation.getSourceCount();
+		long length = HEADER + (long) n * (8 * DOUBLE_COLUMNS + 1) + 4L * sources;
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer header = map(channel, MapMode.READ_WRITE, 0, HEADER);
+			header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(sources);
+			header.putDouble(Physics.G).putDouble(Physics.scaleAU).putDouble(simulation.getTimeStep());
+
+			long at = HEADER;
+			for (double[] column : columns(bodies)) {
+				at = writeColumn(channel, at, column, n);
+			}
+			at = writeFlags(channel, at, bodies.star, n);
+
+			MappedByteBuffer tail = map(channel, MapMode.READ_WRITE, at, 4L * sources);
+			for (int s=0; s<sources; s++) {
+				tail.putInt(simulation.getEnergySource(s));
+			}
+			if (at + 4L * sources != length) {
+				throw new IOException("Checkpoint.save wrote an unexpected length");
+			}
+		}
+	}
+
+	public static void restore(Simulation simulation, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER) {
+				throw new IOException("Checkpoint.restore file too short for a header: " + path);
+			}
+			MappedByteBuffer header = map(channel, MapMode.READ_ONLY, 0, HEADER);
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Checkpoint.restore not a checkpoint file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Checkpoint.restore unsupported version " + version);
+			}
+			int n = header.getInt();
+			int count = header.getInt();
+			double g = header.getDouble();
+			double scale = header.getDouble();
+			double timeStep = header.getDouble();
+			if (n < 0 || count < 0 || channel.size() != HEADER + (long) n * (8 * DOUBLE_COLUMNS + 1) + 4L * count) {
+				throw new IOException("Checkpoint.restore file length does not match its header: " + path);
+			}
+
+			// energy sources are checked first, so a bad file leaves the simulation as it was
+			long columnsEnd = HEADER + (long) n * (8 * DOUBLE_COLUMNS + 1);
+			int[] sources = new int[count];
+			MappedByteBuffer tail = map(channel, MapMode.READ_ONLY, columnsEnd, 4L * count);
+			for (int s=0; s<count; s++) {
+				sources[s] = tail.getInt();
+				if (sources[s] < 0 || sources[s] >= n) {
+					throw new IOException("Checkpoint.restore energy source " + sources[s] + " is not one of " + n + " bodies: " + path);
+				}
+			}
+
+			BodyStore bodies = simulation.getBodyStore();
+			bodies.resize(n);
+			long at = HEADER;
+			for (double[] column : columns(bodies)) {
+				at = readColumn(channel, at, column, n);
+			}
+			readFlags(channel, at, bodies.star, n);
+
+			Physics.G = g;
+			Physics.scaleAU = scale;
+			simulation.setTimeStep(timeStep);
+			simulation.restored(sources, count);
+		}
+	}
+
+	private static double[][] columns(BodyStore bodies) {
+		// file order of the double columns, must not change within a version
+		return new double[][] {
+			bodies.x, bodies.y, bodies.z, bodies.vx, bodies.vy, bodies.vz,
+			bodies.mass, bodies.radius, bodies.kelvin, bodies.baseKelvin, bodies.absorbed,
+			bodies.albedo, bodies.emissivity,
+		};
+	}
+
+	private static long writeColumn(FileChannel channel, long at, double[] column, int n) throws IOException {
+		for (int from=0; from<n; ) {
+			int length = (int) Math.min(n - from, CHUNK / 8);
+			map(channel, MapMode.READ_WRITE, at, 8L * length).asDoubleBuffer().put(column, from, length);
+			at += 8L * length;
+			from += length;
+		}
+		return at;
+	}
+
+	private static long readColumn(FileChannel channel, long at, double[] column, int n) throws IOException {
+		for (int from=0; from<n; ) {
+			int length = (int) Math.min(n - from, CHUNK / 8);
+			map(channel, MapMode.READ_ONLY, at, 8L * length).asDoubleBuffer().get(column, from, length);
+			at += 8L * length;
+			from += length;
+		}
+		return at;
+	}
+
+	private static long writeFlags(FileChannel channel, long at, boolean[] flags, int n) throws IOException {
+		for (int from=0; from<n; ) {
+			int length = (int) Math.min(n - from, CHUNK);
+			MappedByteBuffer buffer = map(channel, MapMode.READ_WRITE, at, length);
+			for (int i=from; i<from+length; i++) {
+				buffer.put((byte) (flags[i] ? 1 : 0));
+			}
+			at += length;
+			from += length;
+		}
+		return at;
+	}
+
+	private static long readFlags(FileChannel channel, long at, boolean[] flags, int n) throws IOException {
+		for (int from=0; from<n; ) {
+			int length = (int) Math.min(n - from, CHUNK);
+			MappedByteBuffer buffer = map(channel, MapMode.READ_ONLY, at, length);
+			for (int i=from; i<from+length; i++) {
+				flags[i] = buffer.get() != 0;
+			}
+			at += length;
+			from += length;
+		}
+		return at;
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, MapMode mode, long at, long length) throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, at, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+}
@@ -0,0 +1,255 @@
+package main.laws;
+
+import java.util.Arrays;
+
+public class CollisionEngine {
+
+	/**Finds overlapping bodies and merges them. Bodies are bucketed into a
+	 * uniform grid of cells as wide as the largest body, hashed into a table
+	 * about twice the body count. Any overlapping pair then shares a cell or
+	 * sits in neighbouring ones, so each body only checks the 27 cells around
+	 * it. That is O(n) expected work whatever the layout.
+	 *
+	 * Overlaps are grouped transitively. Each group collapses into one body
+	 * at its centre of mass, carrying the total mass, the total momentum and
+	 * the total volume. The survivor is a star if the group had one,
+	 * otherwise its most massive member, and it keeps that body's optical
+	 * properties. Merged bodies are compacted out of the store. getRemap
+	 * tells callers where every old index went.
+	 */
+
+	private double radiusScale; // multiplies body radii when testing for contact
+
+	private int merged; // bodies removed by the last pass
+	private int[] remap = new int[0]; // old index to new index after the last pass, merged bodies map to their survivor
+
+	// per pass buffers, grown with the store
+	private int[] cell = new int[0]; // hash bucket of each body
+	private int[] start = new int[1]; // first sorted position of each bucket, plus an end marker
+	private int[] sorted = new int[0]; // bodies ordered by bucket
+	private int[] parent = new int[0]; // union-find forest of touching bodies
+	private int[] survivor = new int[0]; // body kept for each group root
+	private int[] members = new int[0]; // bodies in each group root
+	private double[] gm = new double[0], gx = new double[0], gy = new double[0], gz = new double[0];
+	private double[] gvx = new double[0], gvy = new double[0], gvz = new double[0], gr = new double[0];
+	private boolean[] removed = new boolean[0];
+
+	public CollisionEngine() {
+		this(1);
+	}
+
+	public CollisionEngine(double radiusScale) {
+		this.radiusScale = radiusScale;
+	}
+
+	public double getRadiusScale() {
+		return radiusScale;
+	}
+
+	public void setRadiusScale(double radiusScale) {
+		this.radiusScale = radiusScale;
+	}
+
+	public int getMerged() {
+		return merged;
+	}
+
+	public int[] getRemap() {
+		return remap;
+	}
+
+	public boolean isRemoved(int index) {
+		// true if the body at this old index was merged away in the last pass
+		return merged > 0 && removed[index];
+	}
+
+	public int merge(BodyStore bodies) {
+		// merge every group of touching bodies, returns how many bodies were removed
+		merged = 0;
+		int n = bodies.size();
+		if (n < 2) {return 0;}
+		allocate(n);
+
+		// radii in simulation units, cells as wide as the largest diameter
+		double toSim = 1000.0 / Physics.scaleAU * radiusScale;
+		double largest = 0;
+		for (int i=0; i<n; i++) {
+			largest = Math.max(largest, bodies.radius[i]);
+		}
+		double width = 2 * largest * toSim;
+		if (!(width > 0)) {return 0;}
+
+		int mask = bucket(bodies, n, width);
+		if (!link(bodies, n, width, mask, toSim)) {return 0;}
+		collapse(bodies, n);
+
+		int kept = bodies.compact(removed, remap);
+		for (int i=0; i<n; i++) {
+			if (removed[i]) {
+				remap[i] = remap[survivor[find(i)]];
+			}
+		}
+		merged = n - kept;
+		return merged;
+	}
+
+
+	/* ======================== */
+	/* ===== SPATIAL HASH ===== */
+	/* ======================== */
+
+	private int bucket(BodyStore bodies, int n, double width) {
+		// counting sort of bodies by the hash of their cell
+		int buckets = Integer.highestOneBit(Math.max(2 * n - 1, 1)) << 1;
+		if (start.length < buckets + 1) {
+			start = new int[buckets + 1];
+		}
+		Arrays.fill(start, 0, buckets + 1, 0);
+		int mask = buckets - 1;
+
+		for (int i=0; i<n; i++) {
+			cell[i] = hash(cellOf(bodies.x[i], width), cellOf(bodies.y[i], width), cellOf(bodies.z[i], width)) & mask;
+			start[cell[i] + 1]++;
+		}
+		for (int b=0; b<buckets; b++) {
+			start[b + 1] += start[b];
+		}
+		for (int i=0; i<n; i++) {
+			sorted[start[cell[i]]++] = i;
+		}
+		// the fill pass moved every start to its end, shift them back
+		for (int b=buckets; b>0; b--) {
+			start[b] = start[b - 1];
+		}
+		start[0] = 0;
+		return mask;
+	}
+
+	private boolean link(BodyStore bodies, int n, double width, int mask, double toSim) {
+		// join every touching pair into one group, returns true if any touched
+		boolean touched = false;
+		for (int i=0; i<n; i++) {
+			parent[i] = i;
+		}
+		for (int i=0; i<n; i++) {
+			double x = bodies.x[i], y = bodies.y[i], z = bodies.z[i];
+			long cx = cellOf(x, width), cy = cellOf(y, width), cz = cellOf(z, width);
+			for (long a=cx-1; a<=cx+1; a++) {
+				for (long b=cy-1; b<=cy+1; b++) {
+					for (long c=cz-1; c<=cz+1; c++) {
+						int h = hash(a, b, c) & mask;
+						for (int k=start[h]; k<start[h+1]; k++) {
+							int j = sorted[k];
+							if (j <= i) {continue;}
+							double dx = bodies.x[j] - x;
+							double dy = bodies.y[j] - y;
+							double dz = bodies.z[j] - z;
+							double reach = (bodies.radius[i] + bodies.radius[j]) * toSim;
+							if (dx*dx + dy*dy + dz*dz <= reach * reach) {
+								union(i, j);
+								touched = true;
+							}
+						}
+					}
+				}
+			}
+		}
+		return touched;
+	}
+
+	private static long cellOf(double position, double width) {
+		return (long) Math.floor(position / width);
+	}
+
+	private static int hash(long a, long b, long c) {
+		long h = a * 73856093L ^ b * 19349663L ^ c * 83492791L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void union(int i, int j) {
+		int a = find(i), b = find(j);
+		if (a != b) {
+			parent[Math.max(a, b)] = Math.min(a, b);
+		}
+	}
+
+
+	/* =================== */
+	/* ===== MERGING ===== */
+	/* =================== */
+
+	private void collapse(BodyStore bodies, int n) {
+		// sum mass, mass-weighted position, momentum and volume per group
+		for (int i=0; i<n; i++) {
+			survivor[i] = -1;
+			members[i] = 0;
+			gm[i] = gx[i] = gy[i] = gz[i] = 0;
+			gvx[i] = gvy[i] = gvz[i] = gr[i] = 0;
+		}
+		for (int i=0; i<n; i++) {
+			int g = find(i);
+			double m = bodies.mass[i];
+			members[g]++;
+			gm[g] += m;
+			gx[g] += m * bodies.x[i];
+			gy[g] += m * bodies.y[i];
+			gz[g] += m * bodies.z[i];
+			gvx[g] += m * bodies.vx[i];
+			gvy[g] += m * bodies.vy[i];
+			gvz[g] += m * bodies.vz[i];
+			gr[g] += bodies.radius[i] * bodies.radius[i] * bodies.radius[i];
+
+			int s = survivor[g];
+			if (s < 0 || (bodies.star[i] && !bodies.star[s])
+					|| (bodies.star[i] == bodies.star[s] && bodies.mass[i] > bodies.mass[s])) {
+				survivor[g] = i;
+			}
+		}
+
+		for (int i=0; i<n; i++) {
+			int g = find(i);
+			int s = survivor[g];
+			removed[i] = i != s;
+			// bodies that touched nothing are left exactly as they were
+			if (i != s || members[g] == 1) {continue;}
+			double m = gm[g];
+			bodies.mass[s] = m;
+			bodies.x[s] = gx[g] / m;
+			bodies.y[s] = gy[g] / m;
+			bodies.z[s] = gz[g] / m;
+			bodies.vx[s] = gvx[g] / m;
+			bodies.vy[s] = gvy[g] / m;
+			bodies.vz[s] = gvz[g] / m;
+			bodies.radius[s] = Math.cbrt(gr[g]);
+		}
+	}
+
+	private void allocate(int n) {
+		if (cell.length >= n) {return;}
+		int capacity = Math.max(n, cell.length * 2);
+		cell = new int[capacity];
+		sorted = new int[capacity];
+		parent = new int[capacity];
+		survivor = new int[capacity];
+		members = new int[capacity];
+		remap = new int[capacity];
+		removed = new boolean[capacity];
+		gm = new double[capacity];
+		gx = new double[capacity];
+		gy = new double[capacity];
+		gz = new double[capacity];
+		gvx = new double[capacity];
+		gvy = new double[capacity];
+		gvz = new double[capacity];
+		gr = new double[capacity];
+	}
+
+}
@@ -0,0 +1,164 @@
+package main.laws;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class Diagnostics {
+
+	/**Conserved quantities of a simulation, sampled into a time series. Every
+	 * cadence steps one pass over the store sums kinetic energy, linear
+	 * momentum and angular momentum about the origin. That pass is O(n) and
+	 * allocates nothing. Potential energy costs as much as a force pass, so
+	 * it is only asked of the active gravity engine on every
+	 * potentialCadence-th sample, and it reads NaN in between.
+	 *
+	 * Quantities are in SI units (J, kg m/s, kg m^2/s). Velocities and
+	 * positions are scaled out of grid units with Physics.scaleAU. An exact
+	 * integrator with no collisions keeps all of them constant, so their
+	 * drift measures what a faster engine or a longer step costs.
+	 */
+
+	private final int cadence; // steps between samples
+	private final int potentialCadence; // samples between potential energy sums, 0 for never
+	private long offered = 0; // steps passed to sample
+
+	// time series, one entry per sample
+	private int samples = 0;
+	private long[] step = new long[64];
+	private double[] time = new double[64];
+	private double[] kinetic = new double[64];
+	private double[] potential = new double[64];
+	private double[] px = new double[64], py = new double[64], pz = new double[64];
+	private double[] motion = new double[64]; // sum of m |v|, the scale momentum drift is measured against
+	private double[] lx = new double[64], ly = new double[64], lz = new double[64];
+
+	public Diagnostics(int cadence, int potentialCadence) {
+		if (cadence < 1 || potentialCadence < 0) {
+			throw new IllegalArgumentException("Diagnostics needs a positive cadence");
+		}
+		this.cadence = cadence;
+		this.potentialCadence = potentialCadence;
+	}
+
+	public void sample(BodyStore bodies, GravityEngine gravity, long atStep, double atTime) {
+		// called after every step, records a sample every cadence steps
+		if (offered++ % cadence != 0) {return;}
+		if (samples == step.length) {
+			grow(samples * 2);
+		}
+
+		double k = 0, mx = 0, my = 0, mz = 0, mv = 0, ax = 0, ay = 0, az = 0;
+		for (int i=0; i<bodies.size(); i++) {
+			double m = bodies.mass[i];
+			double vx = bodies.vx[i], vy = bodies.vy[i], vz = bodies.vz[i];
+			double x = bodies.x[i], y = bodies.y[i], z = bodies.z[i];
+			k += m * (vx*vx + vy*vy + vz*vz);
+			mx += m * vx;
+			my += m * vy;
+			mz += m * vz;
+			mv += m * Math.sqrt(vx*vx + vy*vy + vz*vz);
+			ax += m * (y * vz - z * vy);
+			ay += m * (z * vx - x * vz);
+			az += m * (x * vy - y * vx);
+		}
+		double s = Physics.scaleAU;
+
+		int e = samples++;
+		step[e] = atStep;
+		time[e] = atTime;
+		kinetic[e] = 0.5 * k * s * s;
+		px[e] = mx * s;
+		py[e] = my * s;
+		pz[e] = mz * s;
+		motion[e] = mv * s;
+		lx[e] = ax * s * s;
+		ly[e] = ay * s * s;
+		lz[e] = az * s * s;
+		boolean due = potentialCadence > 0 && e % potentialCadence == 0;
+		potential[e] = due ? gravity.potential(bodies) : Double.NaN;
+	}
+
+	public void clear() {
+		samples = 0;
+		offered = 0;
+	}
+
+	public int getSamples() {return samples;}
+
+	public long getStep(int e) {return step[e];}
+
+	public double getTime(int e) {return time[e];}
+
+	public double getKinetic(int e) {return kinetic[e];}
+
+	public double getPotential(int e) {return potential[e];}
+
+	public double getMomentum(int e) {return Math.sqrt(px[e]*px[e] + py[e]*py[e] + pz[e]*pz[e]);}
+
+	public double getAngularMomentum(int e) {return Math.sqrt(lx[e]*lx[e] + ly[e]*ly[e] + lz[e]*lz[e]);}
+
+
+	/* ================= */
+	/* ===== DRIFT ===== */
+	/* ================= */
+
+	public double getEnergyDrift() {
+		// relative change in total energy between the first and last samples with a potential
+		int first = -1, last = -1;
+		for (int e=0; e<samples; e++) {
+			if (!Double.isNaN(potential[e])) {
+				if (first < 0) {first = e;}
+				last = e;
+			}
+		}
+		if (first < 0) {return Double.NaN;}
+		double start = kinetic[first] + potential[first];
+		double end = kinetic[last] + potential[last];
+		return (end - start) / Math.abs(start);
+	}
+
+	public double getMomentumDrift() {
+		// change in the total momentum vector, relative to the sum of every body's momentum
+		// at the first sample, as the total itself starts close to zero in a bound system
+		if (samples == 0) {return Double.NaN;}
+		int e = samples - 1;
+		double dx = px[e] - px[0], dy = py[e] - py[0], dz = pz[e] - pz[0];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz) / motion[0];
+	}
+
+	public double getAngularMomentumDrift() {
+		if (samples == 0) {return Double.NaN;}
+		int e = samples - 1;
+		double dx = lx[e] - lx[0], dy = ly[e] - ly[0], dz = lz[e] - lz[0];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz) / getAngularMomentum(0);
+	}
+
+	public void write(Path path) throws IOException {
+		// the whole series as csv, one row per sample
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+			out.println("step,time,kinetic,potential,px,py,pz,lx,ly,lz");
+			for (int e=0; e<samples; e++) {
+				out.printf("%d,%.6e,%.9e,%.9e,%.9e,%.9e,%.9e,%.9e,%.9e,%.9e%n", step[e], time[e], kinetic[e],
+						potential[e], px[e], py[e], pz[e], lx[e], ly[e], lz[e]);
+			}
+		}
+	}
+
+	private void grow(int capacity) {
+		step = Arrays.copyOf(step, capacity);
+		time = Arrays.copyOf(time, capacity);
+		kinetic = Arrays.copyOf(kinetic, capacity);
+		potential = Arrays.copyOf(potential, capacity);
+		px = Arrays.copyOf(px, capacity);
+		py = Arrays.copyOf(py, capacity);
+		pz = Arrays.copyOf(pz, capacity);
+		motion = Arrays.copyOf(motion, capacity);
+		lx = Arrays.copyOf(lx, capacity);
+		ly = Arrays.copyOf(ly, capacity);
+		lz = Arrays.copyOf(lz, capacity);
+	}
+
+}
@@ -0,0 +1,618 @@
+package main.laws;
+
+import java.util.Arrays;
+
+public class FastMultipole implements GravityEngine {
+
+	/**Fast multipole method gravity with Cartesian expansions. Bodies are
+	 * sorted into an octree with a few bodies per leaf. Every cell gets a
+	 * multipole expansion of its mass about its centre of mass, built from
+	 * its bodies (P2M) or its children (M2M). A dual-tree traversal then
+	 * pairs cells up. Well separated pairs exchange multipole-to-local
+	 * translations (M2L) in both directions, and neighbouring leaves are
+	 * summed directly. Finally the local expansions are pushed down the tree
+	 * (L2L) and evaluated at each body (L2P). The method is O(n) in theory,
+	 * but measured on generated discs the cost grows a little faster. Going
+	 * from 10k to 160k bodies, 16 times as many, made a step about 25 times
+	 * slower, against about 34 times for BarnesHut.
+	 *
+	 * Accuracy is set by the expansion order and the opening angle. A pair
+	 * is well separated when the sum of their radii is under theta times the
+	 * distance between their centres. With the default order 4 and theta 0.5,
+	 * the mean error against BruteForce on a generated disc is usually
+	 * between 1e-6 and 1e-4. An unlucky arrangement can reach 1e-2, as with
+	 * GravityCheck 4000 2. Raising the order or lowering theta tightens that.
+	 */
+
+	public static final int DEFAULT_ORDER = 4;
+	public static final double DEFAULT_THETA = 0.5;
+	private static final int LEAF_SIZE = 64; // most bodies held by a leaf before it splits, direct sums are cheap next to M2L
+	private static final int MAX_DEPTH = 48; // coincident bodies share a leaf past this depth
+
+	private int order; // highest degree kept in the expansions
+	private double theta; // opening angle, smaller is more accurate
+	private int terms; // expansion coefficients per cell for this order
+
+	// multi-index tables, terms are ordered by degree up to the order
+	private int[] ix, iy, iz; // exponents of each term
+	private int[] lessX, lessY, lessZ; // term with one less power of x, y or z, -1 if none
+	private int[] lessXX, lessYY, lessZZ; // term with two less powers, -1 if none
+	private int[] m2lTerm; // [k*terms + n], term n+k in the derivative table
+	private int[] m2lLimit; // terms n paired with k, those with |n| + |k| up to the order
+	private double[] m2lForward, m2lBackward; // [k*terms + n], signed binomials for each direction
+	private int[] m2mStart, m2mSource, m2mPower; // per term, the lower terms feeding it and t powers
+	private double[] m2mBinomial;
+	private int[] l2lStart, l2lSource, l2lPower; // per term, the higher terms feeding it and t powers
+	private double[] l2lBinomial;
+	private double[] derivative, power; // scratch: Taylor coefficients of 1/r and powers of an offset
+
+	// bodies in tree order for the current step
+	private BodyStore source; // store being solved
+	private int count;
+	private int[] sorted = new int[0]; // body index at each tree position
+	private int[] scratch = new int[0]; // partition buffer
+	private int[] buckets = new int[(MAX_DEPTH + 1) * 17]; // octant offsets and fill counts per depth
+	private double[] sx = new double[0], sy = new double[0], sz = new double[0], sm = new double[0];
+	private double[] gx = new double[0], gy = new double[0], gz = new double[0]; // gradient of the potential
+	private double[] phi = new double[0]; // sum of m / r over the other bodies, the potential without -G
+
+	// octree cells, indexed by cell number, root is cell 0 and children follow their parent
+	private int cellCount;
+	private int[] first, size; // range of tree positions held by each cell
+	private int[] child, children; // first child and number of children, 0 children for a leaf
+	private double[] cx, cy, cz, radius; // expansion centre (centre of mass) and enclosing radius
+	private double[] multipole, local; // [cell*terms + term]
+
+	public FastMultipole() {
+		this(DEFAULT_ORDER, DEFAULT_THETA);
+	}
+
+	public FastMultipole(int order) {
+		this(order, DEFAULT_THETA);
+	}
+
+	public FastMultipole(int order, double theta) {
+		this.theta = theta;
+		allocateCells(64);
+		setOrder(order);
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public void setOrder(int order) {
+		this.order = Math.max(1, order);
+		makeTables();
+		multipole = new double[cx.length * terms];
+		local = new double[cx.length * terms];
+	}
+
+	public double getTheta() {
+		return theta;
+	}
+
+	public void setTheta(double theta) {
+		this.theta = theta;
+	}
+
+	@Override
+	public String getName() {
+		return String.format("FMM (p=%d, %.2f)", order, theta);
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		if (!solve(bodies)) {return;}
+		double k = Physics.G / Math.pow(Physics.scaleAU, 3);
+		for (int t=0; t<count; t++) {
+			int i = sorted[t];
+			bodies.ax[i] += gx[t] * k;
+			bodies.ay[i] += gy[t] * k;
+			bodies.az[i] += gz[t] * k;
+		}
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		// the tree always holds every body, only the results written are restricted
+		if (count == 0 || !solve(bodies)) {return;}
+		double k = Physics.G / Math.pow(Physics.scaleAU, 3);
+		for (int t=0; t<this.count; t++) {
+			scratch[sorted[t]] = t;
+		}
+		for (int c=0; c<count; c++) {
+			int i = targets[c];
+			int t = scratch[i];
+			bodies.ax[i] += gx[t] * k;
+			bodies.ay[i] += gy[t] * k;
+			bodies.az[i] += gz[t] * k;
+		}
+	}
+
+	@Override
+	public double potential(BodyStore bodies) {
+		// the same passes as the forces, reading the potential the local expansions carry
+		if (!solve(bodies)) {return 0;}
+		double total = 0;
+		for (int t=0; t<count; t++) {
+			total += sm[t] * phi[t];
+		}
+		return -Physics.G * total / (2 * Physics.scaleAU);
+	}
+
+	private boolean solve(BodyStore bodies) {
+		load(bodies);
+		if (count == 0) {return false;}
+		build();
+		upward();
+		Arrays.fill(local, 0, cellCount * terms, 0);
+		interactSelf(0);
+		downward();
+		return true;
+	}
+
+
+	/* ============================= */
+	/* ===== TREE CONSTRUCTION ===== */
+	/* ============================= */
+
+	private void load(BodyStore bodies) {
+		count = bodies.size();
+		if (sorted.length < count) {
+			int capacity = Math.max(count, sorted.length * 2);
+			sorted = new int[capacity];
+			scratch = new int[capacity];
+			sx = new double[capacity];
+			sy = new double[capacity];
+			sz = new double[capacity];
+			sm = new double[capacity];
+			gx = new double[capacity];
+			gy = new double[capacity];
+			gz = new double[capacity];
+			phi = new double[capacity];
+		}
+		for (int i=0; i<count; i++) {
+			sorted[i] = i;
+		}
+		// positions are gathered into tree order once the tree is built
+		this.source = bodies;
+	}
+
+	private void build() {
+		double[] x = source.x, y = source.y, z = source.z;
+		double minX = x[0], minY = y[0], minZ = z[0];
+		double maxX = minX, maxY = minY, maxZ = minZ;
+		for (int i=1; i<count; i++) {
+			minX = Math.min(minX, x[i]); maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]); maxY = Math.max(maxY, y[i]);
+			minZ = Math.min(minZ, z[i]); maxZ = Math.max(maxZ, z[i]);
+		}
+		double extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+
+		cellCount = 1;
+		first[0] = 0;
+		size[0] = count;
+		subdivide(0, (minX + maxX) / 2, (minY + maxY) / 2, (minZ + maxZ) / 2, extent / 2 * 1.0001 + 1e-12, 0);
+
+		for (int t=0; t<count; t++) {
+			int i = sorted[t];
+			sx[t] = x[i];
+			sy[t] = y[i];
+			sz[t] = z[i];
+			sm[t] = source.mass[i];
+			gx[t] = 0;
+			gy[t] = 0;
+			gz[t] = 0;
+			phi[t] = 0;
+		}
+	}
+
+	private void subdivide(int c, double ox, double oy, double oz, double half, int depth) {
+		child[c] = 0;
+		children[c] = 0;
+		if (size[c] <= LEAF_SIZE || depth >= MAX_DEPTH) {return;}
+
+		// counting sort of the cell's bodies by octant
+		double[] x = source.x, y = source.y, z = source.z;
+		int[] bucket = buckets;
+		int at = depth * 17, fill = at + 9; // this depth's offsets, then its fill counts
+		Arrays.fill(bucket, at, at + 17, 0);
+		int lo = first[c], hi = first[c] + size[c];
+		for (int t=lo; t<hi; t++) {
+			int i = sorted[t];
+			bucket[at + octant(x[i], y[i], z[i], ox, oy, oz) + 1]++;
+		}
+		for (int k=0; k<8; k++) {
+			bucket[at + k + 1] += bucket[at + k];
+			bucket[fill + k] = bucket[at + k];
+		}
+		for (int t=lo; t<hi; t++) {
+			int i = sorted[t];
+			scratch[lo + bucket[fill + octant(x[i], y[i], z[i], ox, oy, oz)]++] = i;
+		}
+		System.arraycopy(scratch, lo, sorted, lo, hi - lo);
+
+		// non-empty octants become consecutive children
+		int n = 0;
+		for (int k=0; k<8; k++) {
+			if (bucket[at + k + 1] > bucket[at + k]) {n++;}
+		}
+		if (cellCount + n > child.length) {
+			allocateCells(Math.max(child.length * 2, cellCount + n));
+		}
+		child[c] = cellCount;
+		children[c] = n;
+		cellCount += n;
+
+		int next = child[c];
+		double h = half / 2;
+		for (int k=0; k<8; k++) {
+			if (bucket[at + k + 1] == bucket[at + k]) {continue;}
+			int cell = next++;
+			first[cell] = lo + bucket[at + k];
+			size[cell] = bucket[at + k + 1] - bucket[at + k];
+			subdivide(cell, ox + ((k & 1) != 0 ? h : -h), oy + ((k & 2) != 0 ? h : -h),
+					  oz + ((k & 4) != 0 ? h : -h), h, depth + 1);
+		}
+	}
+
+	private static int octant(double x, double y, double z, double ox, double oy, double oz) {
+		return (x >= ox ? 1 : 0) | (y >= oy ? 2 : 0) | (z >= oz ? 4 : 0);
+	}
+
+
+	/* ============================ */
+	/* ===== EXPANSION PASSES ===== */
+	/* ============================ */
+
+	private void upward() {
+		// children always follow their parent, so a reverse sweep works bottom-up
+		for (int c=cellCount-1; c>=0; c--) {
+			int base = c * terms;
+			Arrays.fill(multipole, base, base + terms, 0);
+
+			if (children[c] == 0) {
+				double m = 0, x = 0, y = 0, z = 0;
+				for (int t=first[c]; t<first[c]+size[c]; t++) {
+					m += sm[t];
+					x += sm[t] * sx[t];
+					y += sm[t] * sy[t];
+					z += sm[t] * sz[t];
+				}
+				centre(c, m, x, y, z);
+				double r = 0;
+				for (int t=first[c]; t<first[c]+size[c]; t++) {
+					// P2M: each body adds m d^n about the centre
+					double dx = sx[t] - cx[c], dy = sy[t] - cy[c], dz = sz[t] - cz[c];
+					r = Math.max(r, Math.sqrt(dx*dx + dy*dy + dz*dz));
+					powers(dx, dy, dz, terms);
+					for (int n=0; n<terms; n++) {
+						multipole[base + n] += sm[t] * power[n];
+					}
+				}
+				radius[c] = r;
+			} else {
+				double m = 0, x = 0, y = 0, z = 0;
+				for (int k=child[c]; k<child[c]+children[c]; k++) {
+					double mk = multipole[k * terms];
+					m += mk;
+					x += mk * cx[k];
+					y += mk * cy[k];
+					z += mk * cz[k];
+				}
+				centre(c, m, x, y, z);
+				double r = 0;
+				for (int k=child[c]; k<child[c]+children[c]; k++) {
+					// M2M: shift each child's expansion by t = child centre - parent centre
+					double dx = cx[k] - cx[c], dy = cy[k] - cy[c], dz = cz[k] - cz[c];
+					r = Math.max(r, Math.sqrt(dx*dx + dy*dy + dz*dz) + radius[k]);
+					powers(dx, dy, dz, terms);
+					int from = k * terms;
+					for (int n=0; n<terms; n++) {
+						double sum = 0;
+						for (int e=m2mStart[n]; e<m2mStart[n+1]; e++) {
+							sum += m2mBinomial[e] * power[m2mPower[e]] * multipole[from + m2mSource[e]];
+						}
+						multipole[base + n] += sum;
+					}
+				}
+				radius[c] = r;
+			}
+		}
+	}
+
+	private void centre(int c, double m, double x, double y, double z) {
+		// expand about the centre of mass, so the dipole terms vanish
+		if (m > 0) {
+			cx[c] = x / m;
+			cy[c] = y / m;
+			cz[c] = z / m;
+		} else {
+			cx[c] = sx[first[c]];
+			cy[c] = sy[first[c]];
+			cz[c] = sz[first[c]];
+		}
+	}
+
+	private void downward() {
+		// parents come before their children, so a forward sweep works top-down
+		for (int c=0; c<cellCount; c++) {
+			int base = c * terms;
+			if (children[c] > 0) {
+				for (int k=child[c]; k<child[c]+children[c]; k++) {
+					// L2L: re-centre the parent's expansion on t = child centre - parent centre
+					double dx = cx[k] - cx[c], dy = cy[k] - cy[c], dz = cz[k] - cz[c];
+					powers(dx, dy, dz, terms);
+					int to = k * terms;
+					for (int n=0; n<terms; n++) {
+						double sum = 0;
+						for (int e=l2lStart[n]; e<l2lStart[n+1]; e++) {
+							sum += l2lBinomial[e] * power[l2lPower[e]] * local[base + l2lSource[e]];
+						}
+						local[to + n] += sum;
+					}
+				}
+			} else {
+				for (int t=first[c]; t<first[c]+size[c]; t++) {
+					// L2P: sum L_k y^k and its gradient at the body
+					powers(sx[t] - cx[c], sy[t] - cy[c], sz[t] - cz[c], terms);
+					double ax = 0, ay = 0, az = 0, p = local[base];
+					for (int k=1; k<terms; k++) {
+						double l = local[base + k];
+						if (ix[k] > 0) {ax += l * ix[k] * power[lessX[k]];}
+						if (iy[k] > 0) {ay += l * iy[k] * power[lessY[k]];}
+						if (iz[k] > 0) {az += l * iz[k] * power[lessZ[k]];}
+						p += l * power[k];
+					}
+					phi[t] += p;
+					gx[t] += ax;
+					gy[t] += ay;
+					gz[t] += az;
+				}
+			}
+		}
+	}
+
+
+	/* =============================== */
+	/* ===== DUAL TREE TRAVERSAL ===== */
+	/* =============================== */
+
+	private void interactSelf(int c) {
+		if (children[c] == 0) {
+			direct(c, c);
+			return;
+		}
+		int lo = child[c], hi = child[c] + children[c];
+		for (int a=lo; a<hi; a++) {
+			interactSelf(a);
+			for (int b=a+1; b<hi; b++) {
+				interact(a, b);
+			}
+		}
+	}
+
+	private void interact(int a, int b) {
+		double dx = cx[b] - cx[a], dy = cy[b] - cy[a], dz = cz[b] - cz[a];
+		double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+
+		if (radius[a] + radius[b] < theta * d) {
+			translate(a, b, dx, dy, dz);
+		} else if (children[a] == 0 && children[b] == 0) {
+			direct(a, b);
+		} else if (children[b] == 0 || (children[a] > 0 && radius[a] >= radius[b])) {
+			// open the larger cell, or the only one that can be opened
+			for (int k=child[a]; k<child[a]+children[a]; k++) {
+				interact(k, b);
+			}
+		} else {
+			for (int k=child[b]; k<child[b]+children[b]; k++) {
+				interact(a, k);
+			}
+		}
+	}
+
+	private void translate(int a, int b, double dx, double dy, double dz) {
+		// M2L both ways across R = centre b - centre a. Taylor coefficients of 1/|R + y|
+		// are built by the recurrence, those of 1/|-R + y| only differ in sign by degree
+		double r2 = dx*dx + dy*dy + dz*dz;
+		double[] bk = derivative;
+		bk[0] = 1 / Math.sqrt(r2);
+		for (int k=1; k<bk.length; k++) {
+			int s = ix[k] + iy[k] + iz[k];
+			double first = 0, second = 0;
+			if (lessX[k] >= 0) {first += dx * bk[lessX[k]];}
+			if (lessY[k] >= 0) {first += dy * bk[lessY[k]];}
+			if (lessZ[k] >= 0) {first += dz * bk[lessZ[k]];}
+			if (lessXX[k] >= 0) {second += bk[lessXX[k]];}
+			if (lessYY[k] >= 0) {second += bk[lessYY[k]];}
+			if (lessZZ[k] >= 0) {second += bk[lessZZ[k]];}
+			bk[k] = -((2 * s - 1) * first + (s - 1) * second) / (s * r2);
+		}
+
+		int ma = a * terms, mb = b * terms;
+		for (int k=0; k<terms; k++) {
+			double toB = 0, toA = 0;
+			int row = k * terms;
+			for (int n=0; n<m2lLimit[k]; n++) {
+				double bnk = bk[m2lTerm[row + n]];
+				toB += m2lForward[row + n] * multipole[ma + n] * bnk;
+				toA += m2lBackward[row + n] * multipole[mb + n] * bnk;
+			}
+			local[mb + k] += toB;
+			local[ma + k] += toA;
+		}
+	}
+
+	private void direct(int a, int b) {
+		// P2P: exact pairwise sums between two leaves, or within one when a == b
+		for (int i=first[a]; i<first[a]+size[a]; i++) {
+			int start = a == b ? i + 1 : first[b];
+			double ax = 0, ay = 0, az = 0, p = 0;
+			for (int j=start; j<first[b]+size[b]; j++) {
+				double dx = sx[j] - sx[i];
+				double dy = sy[j] - sy[i];
+				double dz = sz[j] - sz[i];
+				double r2 = dx*dx + dy*dy + dz*dz;
+				if (r2 == 0) {continue;} // coincident bodies exert no force, as in BruteForce
+				double inverse = 1 / Math.sqrt(r2);
+				double k = inverse / r2;
+				ax += dx * k * sm[j];
+				ay += dy * k * sm[j];
+				az += dz * k * sm[j];
+				gx[j] -= dx * k * sm[i];
+				gy[j] -= dy * k * sm[i];
+				gz[j] -= dz * k * sm[i];
+				p += inverse * sm[j];
+				phi[j] += inverse * sm[i];
+			}
+			gx[i] += ax;
+			gy[i] += ay;
+			gz[i] += az;
+			phi[i] += p;
+		}
+	}
+
+
+	/* ============================ */
+	/* ===== EXPANSION TABLES ===== */
+	/* ============================ */
+
+	private void powers(double dx, double dy, double dz, int upTo) {
+		// power[n] = d^n for the first upTo terms
+		power[0] = 1;
+		for (int n=1; n<upTo; n++) {
+			if (lessX[n] >= 0) {
+				power[n] = power[lessX[n]] * dx;
+			} else if (lessY[n] >= 0) {
+				power[n] = power[lessY[n]] * dy;
+			} else {
+				power[n] = power[lessZ[n]] * dz;
+			}
+		}
+	}
+
+	private void makeTables() {
+		terms = termCount(order);
+		ix = new int[terms];
+		iy = new int[terms];
+		iz = new int[terms];
+		int side = order + 1;
+		int[] index = new int[side * side * side];
+
+		int t = 0;
+		for (int s=0; s<=order; s++) {
+			for (int a=s; a>=0; a--) {
+				for (int b=s-a; b>=0; b--) {
+					ix[t] = a;
+					iy[t] = b;
+					iz[t] = s - a - b;
+					index[(a * side + b) * side + (s - a - b)] = t++;
+				}
+			}
+		}
+
+		lessX = new int[terms]; lessY = new int[terms]; lessZ = new int[terms];
+		lessXX = new int[terms]; lessYY = new int[terms]; lessZZ = new int[terms];
+		for (t=0; t<terms; t++) {
+			int a = ix[t], b = iy[t], c = iz[t];
+			lessX[t] = a >= 1 ? index[((a-1) * side + b) * side + c] : -1;
+			lessY[t] = b >= 1 ? index[(a * side + b-1) * side + c] : -1;
+			lessZ[t] = c >= 1 ? index[(a * side + b) * side + c-1] : -1;
+			lessXX[t] = a >= 2 ? index[((a-2) * side + b) * side + c] : -1;
+			lessYY[t] = b >= 2 ? index[(a * side + b-2) * side + c] : -1;
+			lessZZ[t] = c >= 2 ? index[(a * side + b) * side + c-2] : -1;
+		}
+
+		// M2L: L_k = sum_n (-1)^|n| C(n+k, n) M_n b_{n+k} towards b, and the
+		// reverse direction sees b_{n+k} flip by (-1)^|n+k|, leaving (-1)^|k|.
+		// the sum is cut at |n| + |k| <= order, which keeps the error of order
+		// theta^(order+1) while needing derivatives no higher than the order
+		m2lLimit = new int[terms];
+		m2lTerm = new int[terms * terms];
+		m2lForward = new double[terms * terms];
+		m2lBackward = new double[terms * terms];
+		for (int k=0; k<terms; k++) {
+			m2lLimit[k] = termCount(order - ix[k] - iy[k] - iz[k]);
+			for (int n=0; n<m2lLimit[k]; n++) {
+				int a = ix[n] + ix[k], b = iy[n] + iy[k], c = iz[n] + iz[k];
+				double binomial = binomial(a, ix[n]) * binomial(b, iy[n]) * binomial(c, iz[n]);
+				m2lTerm[k * terms + n] = index[(a * side + b) * side + c];
+				m2lForward[k * terms + n] = ((ix[n] + iy[n] + iz[n]) % 2 == 0 ? 1 : -1) * binomial;
+				m2lBackward[k * terms + n] = ((ix[k] + iy[k] + iz[k]) % 2 == 0 ? 1 : -1) * binomial;
+			}
+		}
+
+		// M2M: M_n += sum_{k<=n} C(n, k) t^(n-k) M_k
+		// L2L: L_m += sum_{k>=m} C(k, m) t^(k-m) L_k
+		m2mStart = new int[terms + 1];
+		l2lStart = new int[terms + 1];
+		int pairs = 0;
+		for (int n=0; n<terms; n++) {
+			for (int k=0; k<terms; k++) {
+				if (ix[k] <= ix[n] && iy[k] <= iy[n] && iz[k] <= iz[n]) {pairs++;}
+			}
+		}
+		m2mSource = new int[pairs]; m2mPower = new int[pairs]; m2mBinomial = new double[pairs];
+		l2lSource = new int[pairs]; l2lPower = new int[pairs]; l2lBinomial = new double[pairs];
+		int e = 0, f = 0;
+		for (int n=0; n<terms; n++) {
+			m2mStart[n] = e;
+			l2lStart[n] = f;
+			for (int k=0; k<terms; k++) {
+				if (ix[k] <= ix[n] && iy[k] <= iy[n] && iz[k] <= iz[n]) {
+					m2mSource[e] = k;
+					m2mPower[e] = index[((ix[n]-ix[k]) * side + iy[n]-iy[k]) * side + iz[n]-iz[k]];
+					m2mBinomial[e++] = binomial(ix[n], ix[k]) * binomial(iy[n], iy[k]) * binomial(iz[n], iz[k]);
+				}
+				if (ix[k] >= ix[n] && iy[k] >= iy[n] && iz[k] >= iz[n]) {
+					l2lSource[f] = k;
+					l2lPower[f] = index[((ix[k]-ix[n]) * side + iy[k]-iy[n]) * side + iz[k]-iz[n]];
+					l2lBinomial[f++] = binomial(ix[k], ix[n]) * binomial(iy[k], iy[n]) * binomial(iz[k], iz[n]);
+				}
+			}
+		}
+		m2mStart[terms] = e;
+		l2lStart[terms] = f;
+
+		derivative = new double[terms];
+		power = new double[terms];
+	}
+
+	private static int termCount(int order) {
+		return (order + 1) * (order + 2) * (order + 3) / 6;
+	}
+
+	private static double binomial(int n, int k) {
+		double result = 1;
+		for (int i=1; i<=k; i++) {
+			result = result * (n - k + i) / i;
+		}
+		return result;
+	}
+
+	private void allocateCells(int capacity) {
+		first = grow(first, capacity);
+		size = grow(size, capacity);
+		child = grow(child, capacity);
+		children = grow(children, capacity);
+		cx = grow(cx, capacity);
+		cy = grow(cy, capacity);
+		cz = grow(cz, capacity);
+		radius = grow(radius, capacity);
+		if (multipole != null) {
+			multipole = Arrays.copyOf(multipole, capacity * terms);
+			local = Arrays.copyOf(local, capacity * terms);
+		}
+	}
+
+	private static int[] grow(int[] column, int capacity) {
+		return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+	}
+
+	private static double[] grow(double[] column, int capacity) {
+		return column == null ? new double[capacity] : Arrays.copyOf(column, capacity);
+	}
+
+}
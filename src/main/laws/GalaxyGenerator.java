@@ -0,0 +1,134 @@
+package main.laws;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class GalaxyGenerator {
+
+	/**Builds the starting galaxy from a 64-bit seed: one star at the origin
+	 * and planets scattered through a disc around it. Every body draws from
+	 * its own SplittableRandom, seeded by mixing the galaxy seed with the
+	 * body's index. A body's properties therefore depend only on those two
+	 * numbers. Ranges of bodies can be filled on any thread in any order,
+	 * and the galaxy comes out the same whatever the parallelism.
+	 *
+	 * Values follow the same ranges and draw order as the original
+	 * one-at-a-time construction.
+	 */
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L; // spaces the per-body seeds apart
+	private static final int MIN_GRAIN = 4096; // smallest range of bodies worth a task
+
+	private final BodyStore bodies;
+	private final long seed;
+	private final int galaxyRadius; // outer edge of the planet disc (AU)
+
+	private GalaxyGenerator(BodyStore bodies, long seed, int galaxyRadius) {
+		this.bodies = bodies;
+		this.seed = seed;
+		this.galaxyRadius = galaxyRadius;
+	}
+
+	public static void generate(BodyStore bodies, int planets, long seed, int galaxyRadius, ForkJoinPool pool) {
+		// replace the store's contents with a star at index 0 followed by planets
+		int n = planets + 1;
+		bodies.resize(n);
+		GalaxyGenerator generator = new GalaxyGenerator(bodies, seed, galaxyRadius);
+		if (n <= MIN_GRAIN || pool == null) {
+			generator.new BodyRange(0, n, n).compute();
+		} else {
+			int grain = Math.max(MIN_GRAIN, n / (pool.getParallelism() * 8));
+			pool.invoke(generator.new BodyRange(0, n, grain));
+		}
+	}
+
+	public static SplittableRandom random(long seed, int index) {
+		// the stream for one body, independent of every other body's
+		return new SplittableRandom(mix(seed + (index + 1L) * GOLDEN_GAMMA));
+	}
+
+	private static long mix(long z) {
+		// Stafford's variant 13 finaliser, as SplittableRandom uses for its own seeds
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+
+	/* ======================= */
+	/* ===== BODY VALUES ===== */
+	/* ======================= */
+
+	private void makeStar(int i) {
+		SplittableRandom random = random(seed, i);
+		fill(i, 0, 0, 0, 8000, 695700, 1.989e30, random);
+		bodies.star[i] = true;
+		velocity(i, 10, random);
+	}
+
+	private void makePlanet(int i) {
+		// place randomly within a cylindrical space
+		SplittableRandom random = random(seed, i);
+		double t = Math.toRadians(2 * Math.PI * random.nextInt(0, 360));
+		double r = random.nextInt(2, galaxyRadius);
+		double x = r * Math.cos(t);
+		double y = r * Math.sin(t);
+		double z = random.nextDouble(-2.00, 2.01);
+
+		int radius = random.nextInt(6000, 60000);
+		double mass = random.nextDouble(1e23, 1e26);
+		fill(i, x, y, z, 0, radius, mass, random);
+		bodies.star[i] = false;
+		velocity(i, 20000, random);
+	}
+
+	private void fill(int i, double x, double y, double z, int kelvin, int radius, double mass, SplittableRandom random) {
+		bodies.x[i] = x;
+		bodies.y[i] = y;
+		bodies.z[i] = z;
+		bodies.mass[i] = mass;
+		bodies.radius[i] = radius;
+		bodies.kelvin[i] = kelvin;
+		bodies.baseKelvin[i] = kelvin;
+		bodies.absorbed[i] = 0;
+		bodies.albedo[i] = random.nextDouble(0.1, 0.5);
+		bodies.emissivity[i] = random.nextDouble(0.0, 0.7);
+	}
+
+	private void velocity(int i, int range, SplittableRandom random) {
+		// same spread as Simulation.resetVelocity
+		bodies.vx[i] = random.nextInt(-range, range) / Physics.scaleAU;
+		bodies.vy[i] = random.nextInt(-range, range) / Physics.scaleAU;
+		bodies.vz[i] = random.nextInt(-range / 2, range / 2) / Physics.scaleAU;
+	}
+
+	private class BodyRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int from, to, grain;
+
+		BodyRange(int from, int to, int grain) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new BodyRange(from, mid, grain), new BodyRange(mid, to, grain));
+				return;
+			}
+			for (int i=from; i<to; i++) {
+				if (i == 0) {
+					makeStar(i);
+				} else {
+					makePlanet(i);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package main.laws;
+
+import java.util.Random;
+
+public class GravityCheck {
+
+	/**Numerical agreement check between gravity engines. An engine's
+	 * accelerations are compared body by body against a reference engine,
+	 * normally BruteForce, and summarised as mean and worst relative error.
+	 * The store's own accelerations are left as they were found.
+	 *
+	 * Run directly to compare every engine on a random disc of bodies:
+	 * java main.laws.GravityCheck [bodies] [seed]
+	 * The exit status is 1 if an exact engine (SymmetricGravity, or the SIMD
+	 * kernel when it is on the classpath) drifts from BruteForce by more
+	 * than SimdGravity.TOLERANCE, so the check can gate a build.
+	 */
+
+	private final GravityEngine reference;
+	private double meanError; // sum of |a - a_ref| over sum of |a_ref|
+	private double maxError; // worst |a - a_ref| / |a_ref| of any single body
+
+	public GravityCheck() {
+		this(new BruteForce());
+	}
+
+	public GravityCheck(GravityEngine reference) {
+		this.reference = reference;
+	}
+
+	public void compare(GravityEngine engine, BodyStore bodies) {
+		int n = bodies.size();
+		double[] saved = new double[3 * n];
+		for (int i=0; i<n; i++) {
+			saved[3*i] = bodies.ax[i];
+			saved[3*i+1] = bodies.ay[i];
+			saved[3*i+2] = bodies.az[i];
+		}
+
+		bodies.clearAccelerations();
+		reference.accumulate(bodies);
+		double[] ref = new double[3 * n];
+		for (int i=0; i<n; i++) {
+			ref[3*i] = bodies.ax[i];
+			ref[3*i+1] = bodies.ay[i];
+			ref[3*i+2] = bodies.az[i];
+		}
+
+		bodies.clearAccelerations();
+		engine.accumulate(bodies);
+
+		double errorSum = 0, refSum = 0;
+		maxError = 0;
+		for (int i=0; i<n; i++) {
+			double ex = bodies.ax[i] - ref[3*i];
+			double ey = bodies.ay[i] - ref[3*i+1];
+			double ez = bodies.az[i] - ref[3*i+2];
+			double error = Math.sqrt(ex*ex + ey*ey + ez*ez);
+			double magnitude = Math.sqrt(ref[3*i]*ref[3*i] + ref[3*i+1]*ref[3*i+1] + ref[3*i+2]*ref[3*i+2]);
+			errorSum += error;
+			refSum += magnitude;
+			if (magnitude > 0) {
+				maxError = Math.max(maxError, error / magnitude);
+			}
+		}
+		meanError = refSum > 0 ? errorSum / refSum : 0;
+
+		for (int i=0; i<n; i++) {
+			bodies.ax[i] = saved[3*i];
+			bodies.ay[i] = saved[3*i+1];
+			bodies.az[i] = saved[3*i+2];
+		}
+	}
+
+	public double getMeanError() {
+		return meanError;
+	}
+
+	public double getMaxError() {
+		return maxError;
+	}
+
+	public static BodyStore randomDisc(int count, long seed) {
+		// a sun at the origin inside a cylindrical disc of planets, like Galaxy.newSeed
+		Random random = new Random(seed);
+		BodyStore bodies = new BodyStore(count + 1);
+		bodies.add(0, 0, 0, 1.989e30, 695700, 8000);
+		for (int i=0; i<count; i++) {
+			double t = random.nextDouble() * 2 * Math.PI;
+			double r = 2 + random.nextDouble() * 13;
+			double z = -2 + random.nextDouble() * 4;
+			double mass = 1e23 + random.nextDouble() * (1e26 - 1e23);
+			bodies.add(r * Math.cos(t), r * Math.sin(t), z, mass, 6000 + random.nextInt(54000), 0);
+		}
+		return bodies;
+	}
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+		BodyStore bodies = randomDisc(count, seed);
+
+		GravityCheck check = new GravityCheck();
+		GravityEngine[] engines = {
+				new SymmetricGravity(),
+				new SimdGravity(),
+				new BarnesHut(),
+				new ParticleMesh(),
+				new FastMultipole(2),
+				new FastMultipole(4),
+				new FastMultipole(6),
+				new FastMultipole(6, 0.3),
+		};
+		for (GravityEngine engine : engines) {
+			long start = System.nanoTime();
+			check.compare(engine, bodies);
+			System.out.printf("%-24s mean %.3e  max %.3e  (%d ms)%n", engine.getName(),
+					check.getMeanError(), check.getMaxError(), (System.nanoTime() - start) / 1000000);
+		}
+
+		// exact engines must agree with the reference to rounding
+		boolean agree = exact(check, new SymmetricGravity(), bodies);
+		try {
+			// the kernel directly, as SimdGravity would quietly fall back to the scalar loop
+			GravityEngine kernel = (GravityEngine) Class.forName(SimdGravity.KERNEL).getDeclaredConstructor().newInstance();
+			agree &= exact(check, kernel, bodies);
+		} catch (ReflectiveOperationException | LinkageError e) {
+			System.out.println("SIMD kernel not on the classpath or jdk.incubator.vector not added, not checked");
+		}
+		if (!agree) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean exact(GravityCheck check, GravityEngine engine, BodyStore bodies) {
+		check.compare(engine, bodies);
+		boolean agrees = check.getMeanError() <= SimdGravity.TOLERANCE;
+		if (!agrees) {
+			System.out.printf("%s disagrees with BruteForce: mean %.3e over %.0e%n", engine.getName(),
+					check.getMeanError(), SimdGravity.TOLERANCE);
+		}
+		return agrees;
+	}
+
+}
@@ -0,0 +1,54 @@
+package main.laws;
+
+public interface GravityEngine {
+
+	/**Strategy for the force phase of a simulation step. An engine sums the
+	 * gravitational acceleration acting on every body into the store's
+	 * acceleration columns, which the Integrator then consumes in its step,
+	 * as driven by Simulation.step.
+	 */
+
+	// add this step's gravitational acceleration to every body
+	public void accumulate(BodyStore bodies);
+
+	// add gravitational acceleration to the first count bodies listed in targets only.
+	// engines that can only work on every body at once fall back to exact sums
+	public default void accumulate(BodyStore bodies, int[] targets, int count) {
+		int n = bodies.size();
+		for (int t=0; t<count; t++) {
+			int i = targets[t];
+			for (int j=0; j<n; j++) {
+				if (i != j) {
+					bodies.applyForce(i, j);
+				}
+			}
+		}
+	}
+
+	// total gravitational potential energy of every pair (J). the approximate engines
+	// (BarnesHut, FastMultipole, ParticleMesh) override this at the cost of a force pass.
+	// the default is the exact O(n^2) sum, which the exact engines keep, as their forces cost as much
+	public default double potential(BodyStore bodies) {
+		int n = bodies.size();
+		double total = 0;
+		for (int i=0; i<n; i++) {
+			double sum = 0;
+			for (int j=i+1; j<n; j++) {
+				double dx = bodies.x[j] - bodies.x[i];
+				double dy = bodies.y[j] - bodies.y[i];
+				double dz = bodies.z[j] - bodies.z[i];
+				double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+				// coincident bodies exert no force on each other, see BodyStore.applyForce
+				if (d > 0) {
+					sum += bodies.mass[j] / d;
+				}
+			}
+			total += bodies.mass[i] * sum;
+		}
+		return -Physics.G * total / Physics.scaleAU;
+	}
+
+	// display name for the interface
+	public String getName();
+
+}
@@ -0,0 +1,21 @@
+package main.laws;
+
+public interface Integrator {
+
+	/**Time-stepping scheme for a simulation step. An integrator advances the
+	 * velocities and positions in a BodyStore by one timestep, asking the
+	 * gravity engine for fresh accelerations whenever the scheme needs them.
+	 * Constraints such as the speed of light clamp are applied by the caller
+	 * after the step, so they hold for every integrator.
+	 */
+
+	// advance every body by dt seconds
+	public void step(BodyStore bodies, GravityEngine gravity, double dt);
+
+	// forget any accelerations carried over from the previous step
+	public default void reset() {}
+
+	// display name for the interface
+	public String getName();
+
+}
@@ -0,0 +1,42 @@
+package main.laws;
+
+public class Leapfrog implements Integrator {
+
+	/**Second order kick-drift-kick leapfrog. Velocities get half a kick from
+	 * the accelerations at the start of the step, positions drift a full step,
+	 * and the second half kick uses accelerations at the new positions. Those
+	 * accelerations are reused as the first half kick of the next step, so the
+	 * scheme costs one force evaluation per step and is symplectic, giving far
+	 * less energy drift than Euler at the same timestep.
+	 */
+
+	private int primed = -1; // body count the stored accelerations belong to
+
+	@Override
+	public void step(BodyStore bodies, GravityEngine gravity, double dt) {
+		if (primed != bodies.size()) {
+			bodies.clearAccelerations();
+			gravity.accumulate(bodies);
+		}
+
+		bodies.kick(dt / 2);
+		bodies.drift(dt);
+
+		bodies.clearAccelerations();
+		gravity.accumulate(bodies);
+		bodies.kick(dt / 2);
+
+		primed = bodies.size();
+	}
+
+	@Override
+	public void reset() {
+		primed = -1;
+	}
+
+	@Override
+	public String getName() {
+		return "Leapfrog";
+	}
+
+}
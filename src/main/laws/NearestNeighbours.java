@@ -0,0 +1,330 @@
+package main.laws;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class NearestNeighbours {
+
+	/**Links every point to its three closest neighbours within a cutoff,
+	 * using a kd-tree over the points. A query walks the tree nearest box
+	 * first and prunes boxes farther than the third-best distance so far, so
+	 * it touches only a handful of leaves whatever the point count. Queries
+	 * run in parallel across a fork/join pool, each writing only its own
+	 * points' slots.
+	 *
+	 * The slots are filled by the same three-slot rule Galaxy.newTransits has
+	 * always used. Candidates within the cutoff are offered in index order,
+	 * and each replaces the farthest slot if it is no farther. Only
+	 * candidates no farther than the third-closest can survive that rule, so
+	 * just those are offered. Distances use the same arithmetic as
+	 * Point3D.distance. The resulting edges are the ones the full double loop
+	 * finds.
+	 */
+
+	public static final int SLOTS = 3; // neighbours kept per point
+
+	private static final int LEAF_SIZE = 8; // most points held by a leaf
+	private static final int MIN_GRAIN = 512; // smallest range of points worth a task
+	private static final double MARGIN = 1e-9; // relative slack on box bounds against rounding
+
+	private double[] x, y, z; // point columns for the current link
+	private int count;
+	private double cutoff;
+
+	// slot k of point i is at SLOTS * i + k, -1 where the slot is empty
+	private int[] neighbour = new int[0];
+	private double[] distance = new double[0];
+
+	// kd-tree nodes over a permutation of the points, root is node 0, children are left and left+1
+	private int[] points = new int[0];
+	private int nodeCount;
+	private int depth;
+	private int[] lo = new int[0], hi = new int[0], left = new int[0];
+	private double[] minX = new double[0], minY = new double[0], minZ = new double[0];
+	private double[] maxX = new double[0], maxY = new double[0], maxZ = new double[0];
+
+	public void link(double[] x, double[] y, double[] z, int count, double cutoff, ForkJoinPool pool) {
+		// fill the slots of the first count points
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.count = count;
+		this.cutoff = cutoff;
+		allocate(count);
+		if (count == 0) {return;}
+		build();
+
+		if (count <= MIN_GRAIN || pool == null) {
+			new PointRange(0, count, count).compute();
+		} else {
+			int grain = Math.max(MIN_GRAIN, count / (pool.getParallelism() * 8));
+			pool.invoke(new PointRange(0, count, grain));
+		}
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getNeighbour(int i, int k) {
+		return neighbour[SLOTS * i + k];
+	}
+
+	public double getDistance(int i, int k) {
+		return distance[SLOTS * i + k];
+	}
+
+
+	/* =================== */
+	/* ===== KD-TREE ===== */
+	/* =================== */
+
+	private void build() {
+		for (int i=0; i<count; i++) {
+			points[i] = i;
+		}
+		nodeCount = 1;
+		depth = 0;
+		split(0, 0, count, 0);
+	}
+
+	private void split(int node, int from, int to, int level) {
+		lo[node] = from;
+		hi[node] = to;
+		left[node] = -1;
+		depth = Math.max(depth, level);
+
+		double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, z0 = Double.MAX_VALUE;
+		double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE, z1 = -Double.MAX_VALUE;
+		for (int t=from; t<to; t++) {
+			int p = points[t];
+			x0 = Math.min(x0, x[p]); x1 = Math.max(x1, x[p]);
+			y0 = Math.min(y0, y[p]); y1 = Math.max(y1, y[p]);
+			z0 = Math.min(z0, z[p]); z1 = Math.max(z1, z[p]);
+		}
+		minX[node] = x0; maxX[node] = x1;
+		minY[node] = y0; maxY[node] = y1;
+		minZ[node] = z0; maxZ[node] = z1;
+
+		if (to - from <= LEAF_SIZE) {return;}
+
+		// halve along the widest side of the box
+		double[] axis = x;
+		if (y1 - y0 > x1 - x0 && y1 - y0 >= z1 - z0) {
+			axis = y;
+		} else if (z1 - z0 > x1 - x0 && z1 - z0 > y1 - y0) {
+			axis = z;
+		}
+		int mid = (from + to) >>> 1;
+		select(axis, from, to - 1, mid);
+
+		int child = nodeCount;
+		nodeCount += 2;
+		left[node] = child;
+		split(child, from, mid, level + 1);
+		split(child + 1, mid, to, level + 1);
+	}
+
+	private void select(double[] axis, int from, int to, int k) {
+		// quickselect so the point at k has the k-th smallest coordinate in [from, to]
+		while (from < to) {
+			double pivot = axis[points[(from + to) >>> 1]];
+			int i = from, j = to;
+			while (i <= j) {
+				while (axis[points[i]] < pivot) {i++;}
+				while (axis[points[j]] > pivot) {j--;}
+				if (i <= j) {
+					int swap = points[i]; points[i] = points[j]; points[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				to = j;
+			} else if (k >= i) {
+				from = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private double boxDistance2(int node, double px, double py, double pz) {
+		// squared distance from p to the nearest point of the node's box
+		double dx = Math.max(0, Math.max(minX[node] - px, px - maxX[node]));
+		double dy = Math.max(0, Math.max(minY[node] - py, py - maxY[node]));
+		double dz = Math.max(0, Math.max(minZ[node] - pz, pz - maxZ[node]));
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	private void allocate(int n) {
+		if (neighbour.length < SLOTS * n) {
+			int capacity = Math.max(n, neighbour.length / SLOTS * 2);
+			neighbour = new int[SLOTS * capacity];
+			distance = new double[SLOTS * capacity];
+			points = new int[capacity];
+		}
+		// a tree over n points with LEAF_SIZE leaves never needs more than 2n nodes
+		if (lo.length < 2 * n) {
+			int nodes = Math.max(2 * n, lo.length * 2);
+			lo = new int[nodes];
+			hi = new int[nodes];
+			left = new int[nodes];
+			minX = new double[nodes];
+			minY = new double[nodes];
+			minZ = new double[nodes];
+			maxX = new double[nodes];
+			maxY = new double[nodes];
+			maxZ = new double[nodes];
+		}
+	}
+
+
+	/* =================== */
+	/* ===== QUERIES ===== */
+	/* =================== */
+
+	private class PointRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int from, to, grain;
+
+		// per task scratch
+		private int[] stack;
+		private int[] candidate = new int[16]; // points within the cutoff seen by the walk
+		private double[] reach = new double[16]; // their distances
+		private int candidates;
+
+		PointRange(int from, int to, int grain) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PointRange(from, mid, grain), new PointRange(mid, to, grain));
+				return;
+			}
+			stack = new int[2 * depth + 4];
+			for (int i=from; i<to; i++) {
+				double third = walk(i);
+				offer(i, third);
+			}
+		}
+
+		private double walk(int i) {
+			// collects every point that was ever within the running third-best distance,
+			// returns the final third-best distance, or the cutoff if fewer than three are in range
+			double px = x[i], py = y[i], pz = z[i];
+			double b0 = Double.MAX_VALUE, b1 = Double.MAX_VALUE, b2 = Double.MAX_VALUE; // best three, b2 farthest
+			double worst = cutoff;
+			candidates = 0;
+
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				if (boxDistance2(node, px, py, pz) > worst * worst * (1 + MARGIN)) {continue;}
+
+				if (left[node] < 0) {
+					for (int t=lo[node]; t<hi[node]; t++) {
+						int j = points[t];
+						if (j == i) {continue;}
+						// same operation order as Point3D.distance
+						double a = px - x[j], b = py - y[j], c = pz - z[j];
+						double d = Math.sqrt(a * a + b * b + c * c);
+						if (d > worst) {continue;}
+						add(j, d);
+						if (d < b2) {
+							if (d < b1) {
+								b2 = b1;
+								if (d < b0) {b1 = b0; b0 = d;} else {b1 = d;}
+							} else {
+								b2 = d;
+							}
+							worst = Math.min(cutoff, b2);
+						}
+					}
+				} else {
+					// push the farther child first so the nearer one is walked first
+					int a = left[node], b = left[node] + 1;
+					if (boxDistance2(a, px, py, pz) > boxDistance2(b, px, py, pz)) {
+						stack[top++] = a;
+						stack[top++] = b;
+					} else {
+						stack[top++] = b;
+						stack[top++] = a;
+					}
+				}
+			}
+			return worst;
+		}
+
+		private void add(int j, double d) {
+			if (candidates == candidate.length) {
+				candidate = Arrays.copyOf(candidate, candidates * 2);
+				reach = Arrays.copyOf(reach, candidates * 2);
+			}
+			candidate[candidates] = j;
+			reach[candidates] = d;
+			candidates++;
+		}
+
+		private void offer(int i, double third) {
+			// keep the candidates that can survive, in index order, then run the three-slot rule
+			int kept = 0;
+			for (int c=0; c<candidates; c++) {
+				if (reach[c] <= third) {
+					candidate[kept] = candidate[c];
+					reach[kept] = reach[c];
+					kept++;
+				}
+			}
+			sortByIndex(kept);
+
+			double dist1 = cutoff, dist2 = cutoff, dist3 = cutoff;
+			int closest1 = -1, closest2 = -1, closest3 = -1;
+			for (int c=0; c<kept; c++) {
+				double newDist = reach[c];
+				if (newDist <= dist1 && dist1 > dist2 && dist1 > dist3) {
+					closest1 = candidate[c];
+					dist1 = newDist;
+				} else if (newDist <= dist2 && dist2 > dist3) {
+					closest2 = candidate[c];
+					dist2 = newDist;
+				} else if (newDist <= dist3) {
+					closest3 = candidate[c];
+					dist3 = newDist;
+				}
+			}
+			int s = SLOTS * i;
+			neighbour[s] = closest1;
+			neighbour[s + 1] = closest2;
+			neighbour[s + 2] = closest3;
+			distance[s] = dist1;
+			distance[s + 1] = dist2;
+			distance[s + 2] = dist3;
+		}
+
+		private void sortByIndex(int n) {
+			// insertion sort, there are rarely more than a few candidates left
+			for (int a=1; a<n; a++) {
+				int j = candidate[a];
+				double d = reach[a];
+				int b = a - 1;
+				while (b >= 0 && candidate[b] > j) {
+					candidate[b + 1] = candidate[b];
+					reach[b + 1] = reach[b];
+					b--;
+				}
+				candidate[b + 1] = j;
+				reach[b + 1] = d;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+package main.laws;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelGravity implements GravityEngine {
+
+	/**Exact all-pairs gravity split across a fork/join pool. Target bodies are
+	 * divided into ranges and each task sums the pull on its own targets in
+	 * local accumulators, so no state is shared between workers. Every target
+	 * adds its sources in index order, which keeps results bit-for-bit
+	 * identical to BruteForce whatever the thread count.
+	 */
+
+	private static final int MIN_GRAIN = 16; // smallest range of targets worth a task
+
+	private final ForkJoinPool pool;
+
+	public ParallelGravity(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		int n = bodies.size();
+		if (n == 0) {return;}
+		int grain = Math.max(MIN_GRAIN, n / (pool.getParallelism() * 8));
+		pool.invoke(new TargetRange(bodies, null, 0, n, grain));
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		if (count == 0) {return;}
+		int grain = Math.max(MIN_GRAIN, count / (pool.getParallelism() * 8));
+		pool.invoke(new TargetRange(bodies, targets, 0, count, grain));
+	}
+
+	@Override
+	public String getName() {
+		return String.format("Parallel (%d)", pool.getParallelism());
+	}
+
+	private static class TargetRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final BodyStore bodies;
+		private final int[] targets; // body indices to work on, null for every body
+		private final int lo, hi, grain;
+
+		TargetRange(BodyStore bodies, int[] targets, int lo, int hi, int grain) {
+			this.bodies = bodies;
+			this.targets = targets;
+			this.lo = lo;
+			this.hi = hi;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > grain) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new TargetRange(bodies, targets, lo, mid, grain),
+						  new TargetRange(bodies, targets, mid, hi, grain));
+				return;
+			}
+
+			int n = bodies.size();
+			double[] x = bodies.x, y = bodies.y, z = bodies.z, m = bodies.mass;
+			for (int t=lo; t<hi; t++) {
+				int i = targets == null ? t : targets[t];
+				// same arithmetic as BodyStore.applyForce, summed locally
+				double ax = bodies.ax[i], ay = bodies.ay[i], az = bodies.az[i];
+				double xi = x[i], yi = y[i], zi = z[i];
+				for (int j=0; j<n; j++) {
+					if (j == i) {continue;}
+					double dx = x[j] - xi;
+					double dy = y[j] - yi;
+					double dz = z[j] - zi;
+					double d = Math.sqrt(dx*dx + dy*dy + dz*dz) * Physics.scaleAU;
+					double g = (Physics.G * m[j]) / Math.pow(d, 3);
+					if (Double.isInfinite(g)) {
+						g = 0;
+					}
+					ax += dx * g;
+					ay += dy * g;
+					az += dz * g;
+				}
+				bodies.ax[i] = ax;
+				bodies.ay[i] = ay;
+				bodies.az[i] = az;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,477 @@
+package main.laws;
+
+import java.util.Arrays;
+
+public class ParticleMesh implements GravityEngine {
+
+	/**Particle-mesh gravity for very large, smooth distributions. Mass is
+	 * deposited onto a cubic grid with cloud-in-cell weights, the potential
+	 * is found by convolving the grid with 1/r through a pure-Java FFT, and
+	 * accelerations are differenced from the potential and interpolated back
+	 * to each body with the same weights. The cost is O(n + g^3 log g), where
+	 * g is the grid size, so it does not depend on how many pairs there are.
+	 *
+	 * The grid is refitted each step to the bounding box of the disc, taken
+	 * as every body within STRETCH times the distance from the centre of
+	 * mass that holds CORE_FRACTION of the bodies. A body thrown out beyond
+	 * that stays off the mesh, so it cannot stretch the cells for everyone
+	 * else. Its pull and the forces on it are summed directly instead. Bodies
+	 * with a position that is not finite are left out altogether. The grid
+	 * is padded to twice its size for the convolution, so the potential is
+	 * that of an isolated system and not a periodic one. Forces are only
+	 * resolved down to about two cells, so close pairs are much weaker than
+	 * with the exact engines.
+	 */
+
+	public static final int DEFAULT_GRID = 64;
+	private static final double CORE_FRACTION = 0.99; // share of the bodies that sets the disc's size
+	private static final double STRETCH = 2; // bodies past this many times that size are summed directly
+
+	private int grid; // nodes per side of the mass grid, a power of two
+	private int padded; // nodes per side of the zero-padded convolution grid
+	private double[] re, im; // padded grid, mass then potential after the transforms
+	private double[] green; // transformed 1/r kernel for unit cells, divided by padded^3
+	private double[] lineRe, lineIm; // one line of the grid being transformed
+	private double[] cos, sin; // FFT twiddle factors
+	private int[] reversed; // bit reversed index of each position in a line
+
+	// placement of the grid for the current step
+	private double ox, oy, oz; // position of node (0,0,0)
+	private double h; // cell width (AU)
+
+	// bodies kept off the mesh this step
+	private boolean[] meshed = new boolean[0]; // whether each body was deposited
+	private boolean[] direct = new boolean[0]; // whether each body is beyond the disc and summed directly
+	private int[] outside = new int[0]; // indices of the bodies summed directly
+	private int outsideCount;
+	private double[] reach = new double[0]; // scratch: distance of each body from the centre
+
+	public ParticleMesh() {
+		this(DEFAULT_GRID);
+	}
+
+	public ParticleMesh(int grid) {
+		setGrid(grid);
+	}
+
+	public int getGrid() {
+		return grid;
+	}
+
+	public void setGrid(int grid) {
+		// round up to a power of two, at least 8 nodes so the stencils fit
+		int size = Integer.highestOneBit(Math.max(grid, 8) - 1) << 1;
+		if (size == this.grid) {return;}
+		this.grid = size;
+		this.padded = size * 2;
+		re = new double[padded * padded * padded];
+		im = new double[padded * padded * padded];
+		lineRe = new double[padded];
+		lineIm = new double[padded];
+		makeTwiddles();
+		makeGreen();
+	}
+
+	@Override
+	public String getName() {
+		return String.format("Particle Mesh (%d)", grid);
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		if (bodies.size() == 0) {return;}
+		solve(bodies);
+		for (int i=0; i<bodies.size(); i++) {
+			pull(bodies, i);
+		}
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		// the mesh always holds every body it can, only the interpolation is restricted
+		if (count == 0) {return;}
+		solve(bodies);
+		for (int t=0; t<count; t++) {
+			pull(bodies, targets[t]);
+		}
+	}
+
+
+	@Override
+	public double potential(BodyStore bodies) {
+		// mesh potential at each body less the part its own deposit adds, and direct sums off the mesh
+		int n = bodies.size();
+		if (n == 0) {return 0;}
+		solve(bodies);
+		double mesh = 0, pairs = 0;
+		for (int i=0; i<n; i++) {
+			if (meshed[i]) {
+				mesh += bodies.mass[i] * (sample(bodies, i) - self(bodies, i)) / h;
+			} else if (direct[i]) {
+				for (int j=0; j<n; j++) {
+					// meshed partners once from this end, other outliers once per pair
+					if (meshed[j] || (direct[j] && j > i)) {
+						pairs += bodies.mass[i] * bodies.mass[j] / distanceAU(bodies, i, j);
+					}
+				}
+			}
+		}
+		return -Physics.G * (mesh / 2 + pairs) / Physics.scaleAU;
+	}
+
+
+	/* ======================= */
+	/* ===== MESH PHASES ===== */
+	/* ======================= */
+
+	private void solve(BodyStore bodies) {
+		fit(bodies);
+		Arrays.fill(re, 0);
+		Arrays.fill(im, 0);
+		deposit(bodies);
+
+		transform(false);
+		for (int c=0; c<re.length; c++) {
+			re[c] *= green[c];
+			im[c] *= green[c];
+		}
+		transform(true);
+	}
+
+	private void fit(BodyStore bodies) {
+		int n = bodies.size();
+		if (meshed.length < n) {
+			int capacity = Math.max(n, meshed.length * 2);
+			meshed = new boolean[capacity];
+			direct = new boolean[capacity];
+			outside = new int[capacity];
+			reach = new double[capacity];
+		}
+
+		// centre of mass of the bodies with a finite position
+		double m = 0, cx = 0, cy = 0, cz = 0;
+		for (int i=0; i<n; i++) {
+			meshed[i] = Double.isFinite(bodies.x[i]) && Double.isFinite(bodies.y[i]) && Double.isFinite(bodies.z[i]);
+			direct[i] = false;
+			if (!meshed[i]) {continue;}
+			m += bodies.mass[i];
+			cx += bodies.mass[i] * bodies.x[i];
+			cy += bodies.mass[i] * bodies.y[i];
+			cz += bodies.mass[i] * bodies.z[i];
+		}
+		if (m > 0) {
+			cx /= m;
+			cy /= m;
+			cz /= m;
+		}
+
+		// size of the disc, from the distance (along the farthest axis) that holds most bodies
+		int count = 0;
+		for (int i=0; i<n; i++) {
+			if (meshed[i]) {
+				reach[count++] = distance(bodies, i, cx, cy, cz);
+			}
+		}
+		double limit = Double.POSITIVE_INFINITY;
+		if (count > 0) {
+			int k = Math.min(count - 1, (int) Math.ceil(CORE_FRACTION * count) - 1);
+			select(reach, 0, count - 1, k);
+			if (reach[k] > 0) {limit = STRETCH * reach[k];}
+		}
+
+		outsideCount = 0;
+		for (int i=0; i<n; i++) {
+			if (meshed[i] && !(distance(bodies, i, cx, cy, cz) <= limit)) {
+				meshed[i] = false;
+				direct[i] = true;
+				outside[outsideCount++] = i;
+			}
+		}
+
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int i=0; i<n; i++) {
+			if (!meshed[i]) {continue;}
+			minX = Math.min(minX, bodies.x[i]);
+			minY = Math.min(minY, bodies.y[i]);
+			minZ = Math.min(minZ, bodies.z[i]);
+			maxX = Math.max(maxX, bodies.x[i]);
+			maxY = Math.max(maxY, bodies.y[i]);
+			maxZ = Math.max(maxZ, bodies.z[i]);
+		}
+		if (minX > maxX) {
+			// nothing on the mesh, any placement will do
+			minX = minY = minZ = maxX = maxY = maxZ = 0;
+		}
+		double extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+
+		// bodies sit half a cell inside nodes 1 and grid-3, leaving a node either side
+		// for the cloud-in-cell spread and another for the potential differences
+		h = extent > 0 ? extent / (grid - 5) : 1;
+		ox = minX - 1.5 * h;
+		oy = minY - 1.5 * h;
+		oz = minZ - 1.5 * h;
+	}
+
+	private static double distance(BodyStore bodies, int i, double cx, double cy, double cz) {
+		return Math.max(Math.abs(bodies.x[i] - cx), Math.max(Math.abs(bodies.y[i] - cy), Math.abs(bodies.z[i] - cz)));
+	}
+
+	private static void select(double[] values, int from, int to, int k) {
+		// quickselect so values[k] is the k-th smallest in [from, to]
+		while (from < to) {
+			double pivot = values[(from + to) >>> 1];
+			int i = from, j = to;
+			while (i <= j) {
+				while (values[i] < pivot) {i++;}
+				while (values[j] > pivot) {j--;}
+				if (i <= j) {
+					double swap = values[i]; values[i] = values[j]; values[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				to = j;
+			} else if (k >= i) {
+				from = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void deposit(BodyStore bodies) {
+		for (int i=0; i<bodies.size(); i++) {
+			if (!meshed[i]) {continue;}
+			double u = (bodies.x[i] - ox) / h;
+			double v = (bodies.y[i] - oy) / h;
+			double w = (bodies.z[i] - oz) / h;
+			int a = (int) u, b = (int) v, c = (int) w;
+			double fu = u - a, fv = v - b, fw = w - c;
+			double m = bodies.mass[i];
+
+			// share the mass between the eight surrounding nodes
+			for (int da=0; da<2; da++) {
+				double wa = m * (da == 0 ? 1 - fu : fu);
+				for (int db=0; db<2; db++) {
+					double wb = wa * (db == 0 ? 1 - fv : fv);
+					int row = ((a + da) * padded + b + db) * padded + c;
+					re[row] += wb * (1 - fw);
+					re[row + 1] += wb * fw;
+				}
+			}
+		}
+	}
+
+	private void pull(BodyStore bodies, int i) {
+		// mesh force plus the direct pull of bodies off the mesh, or a direct sum for those bodies
+		if (meshed[i]) {
+			interpolate(bodies, i);
+			for (int t=0; t<outsideCount; t++) {
+				bodies.applyForce(i, outside[t]);
+			}
+		} else if (direct[i]) {
+			for (int j=0; j<bodies.size(); j++) {
+				if (j != i && (meshed[j] || direct[j])) {
+					bodies.applyForce(i, j);
+				}
+			}
+		}
+	}
+
+	private double sample(BodyStore bodies, int i) {
+		// convolved grid at the body, with the same weights as the deposit
+		double u = (bodies.x[i] - ox) / h;
+		double v = (bodies.y[i] - oy) / h;
+		double w = (bodies.z[i] - oz) / h;
+		int a = (int) u, b = (int) v, c = (int) w;
+		double fu = u - a, fv = v - b, fw = w - c;
+		double sum = 0;
+		for (int da=0; da<2; da++) {
+			double wa = da == 0 ? 1 - fu : fu;
+			for (int db=0; db<2; db++) {
+				double wb = wa * (db == 0 ? 1 - fv : fv);
+				int n = ((a + da) * padded + b + db) * padded + c;
+				sum += wb * ((1 - fw) * re[n] + fw * re[n + 1]);
+			}
+		}
+		return sum;
+	}
+
+	private double self(BodyStore bodies, int i) {
+		// what sample reads from the body's own deposit: its eight weights paired through the kernel
+		double u = (bodies.x[i] - ox) / h;
+		double v = (bodies.y[i] - oy) / h;
+		double w = (bodies.z[i] - oz) / h;
+		double fu = u - (int) u, fv = v - (int) v, fw = w - (int) w;
+		double sum = 0;
+		for (int p=0; p<8; p++) {
+			double wp = ((p & 1) != 0 ? fu : 1 - fu) * ((p & 2) != 0 ? fv : 1 - fv) * ((p & 4) != 0 ? fw : 1 - fw);
+			for (int q=0; q<8; q++) {
+				double wq = ((q & 1) != 0 ? fu : 1 - fu) * ((q & 2) != 0 ? fv : 1 - fv) * ((q & 4) != 0 ? fw : 1 - fw);
+				// offsets between two corners of a cell are 0 or 1 on each axis, same as the green kernel
+				int r2 = Integer.bitCount(p ^ q);
+				sum += wp * wq * (r2 == 0 ? 1 : 1 / Math.sqrt(r2));
+			}
+		}
+		return bodies.mass[i] * sum;
+	}
+
+	private static double distanceAU(BodyStore bodies, int i, int j) {
+		double dx = bodies.x[j] - bodies.x[i];
+		double dy = bodies.y[j] - bodies.y[i];
+		double dz = bodies.z[j] - bodies.z[i];
+		double d = Math.sqrt(dx*dx + dy*dy + dz*dz);
+		return d > 0 ? d : Double.POSITIVE_INFINITY; // coincident bodies add nothing, as in the exact sum
+	}
+
+	private void interpolate(BodyStore bodies, int i) {
+		double u = (bodies.x[i] - ox) / h;
+		double v = (bodies.y[i] - oy) / h;
+		double w = (bodies.z[i] - oz) / h;
+		int a = (int) u, b = (int) v, c = (int) w;
+		double fu = u - a, fv = v - b, fw = w - c;
+		int si = padded * padded, sj = padded; // index strides along x and y
+
+		// the potential is -G/scaleAU^3/h times the convolved grid, and its negative
+		// gradient by central differences picks up another 1/2h
+		double k = Physics.G / Math.pow(Physics.scaleAU, 3) / (2 * h * h);
+		double gx = 0, gy = 0, gz = 0;
+		for (int da=0; da<2; da++) {
+			double wa = da == 0 ? 1 - fu : fu;
+			for (int db=0; db<2; db++) {
+				double wb = wa * (db == 0 ? 1 - fv : fv);
+				for (int dc=0; dc<2; dc++) {
+					double wc = wb * (dc == 0 ? 1 - fw : fw);
+					int n = ((a + da) * padded + b + db) * padded + c + dc;
+					gx += wc * (re[n + si] - re[n - si]);
+					gy += wc * (re[n + sj] - re[n - sj]);
+					gz += wc * (re[n + 1] - re[n - 1]);
+				}
+			}
+		}
+		bodies.ax[i] += gx * k;
+		bodies.ay[i] += gy * k;
+		bodies.az[i] += gz * k;
+	}
+
+
+	/* ================================== */
+	/* ===== FAST FOURIER TRANSFORM ===== */
+	/* ================================== */
+
+	private void makeTwiddles() {
+		cos = new double[padded / 2];
+		sin = new double[padded / 2];
+		for (int t=0; t<padded/2; t++) {
+			cos[t] = Math.cos(2 * Math.PI * t / padded);
+			sin[t] = Math.sin(2 * Math.PI * t / padded);
+		}
+		int bits = Integer.numberOfTrailingZeros(padded);
+		reversed = new int[padded];
+		for (int t=0; t<padded; t++) {
+			reversed[t] = Integer.reverse(t) >>> (32 - bits);
+		}
+	}
+
+	private void makeGreen() {
+		// 1/r between nodes in cell units, wrapped so negative offsets sit at the far end.
+		// a node's own cell uses 1, which only shifts the potential locally
+		Arrays.fill(im, 0);
+		for (int a=0; a<padded; a++) {
+			int da = Math.min(a, padded - a);
+			for (int b=0; b<padded; b++) {
+				int db = Math.min(b, padded - b);
+				for (int c=0; c<padded; c++) {
+					int dc = Math.min(c, padded - c);
+					int r2 = da*da + db*db + dc*dc;
+					re[(a * padded + b) * padded + c] = r2 == 0 ? 1 : 1 / Math.sqrt(r2);
+				}
+			}
+		}
+		transformAll(false);
+
+		// the kernel is real and even, so its transform is real too
+		double norm = 1.0 / re.length;
+		green = new double[re.length];
+		for (int c=0; c<re.length; c++) {
+			green[c] = re[c] * norm;
+		}
+	}
+
+	private void transform(boolean inverse) {
+		// only the first grid nodes on each axis hold mass, and only those are read back,
+		// so lines that are all zero in or unused out are skipped
+		if (!inverse) {
+			transformAxis(2, grid, grid, false);
+			transformAxis(1, grid, padded, false);
+			transformAxis(0, padded, padded, false);
+		} else {
+			transformAxis(0, padded, padded, true);
+			transformAxis(1, grid, padded, true);
+			transformAxis(2, grid, grid, true);
+		}
+	}
+
+	private void transformAll(boolean inverse) {
+		transformAxis(2, padded, padded, inverse);
+		transformAxis(1, padded, padded, inverse);
+		transformAxis(0, padded, padded, inverse);
+	}
+
+	private void transformAxis(int axis, int outerLimit, int innerLimit, boolean inverse) {
+		// transform every line along axis, for the first outerLimit and innerLimit
+		// positions of the other two axes in x, y, z order
+		int[] strides = {padded * padded, padded, 1};
+		int stride = strides[axis];
+		int outerStride = axis == 0 ? strides[1] : strides[0];
+		int innerStride = axis == 2 ? strides[1] : strides[2];
+
+		for (int p=0; p<outerLimit; p++) {
+			for (int q=0; q<innerLimit; q++) {
+				int start = p * outerStride + q * innerStride;
+				for (int t=0; t<padded; t++) {
+					lineRe[t] = re[start + t * stride];
+					lineIm[t] = im[start + t * stride];
+				}
+				fft(inverse);
+				for (int t=0; t<padded; t++) {
+					re[start + t * stride] = lineRe[t];
+					im[start + t * stride] = lineIm[t];
+				}
+			}
+		}
+	}
+
+	private void fft(boolean inverse) {
+		// in-place iterative radix-2 transform of the line buffers, unnormalised
+		int n = padded;
+		for (int t=0; t<n; t++) {
+			int r = reversed[t];
+			if (r > t) {
+				double swap = lineRe[t]; lineRe[t] = lineRe[r]; lineRe[r] = swap;
+				swap = lineIm[t]; lineIm[t] = lineIm[r]; lineIm[r] = swap;
+			}
+		}
+		double sign = inverse ? 1 : -1;
+		for (int span=1; span<n; span*=2) {
+			int step = n / (span * 2);
+			for (int start=0; start<n; start+=span*2) {
+				for (int t=0; t<span; t++) {
+					double wr = cos[t * step];
+					double wi = sign * sin[t * step];
+					int even = start + t;
+					int odd = even + span;
+					double tr = lineRe[odd] * wr - lineIm[odd] * wi;
+					double ti = lineRe[odd] * wi + lineIm[odd] * wr;
+					lineRe[odd] = lineRe[even] - tr;
+					lineIm[odd] = lineIm[even] - ti;
+					lineRe[even] += tr;
+					lineIm[even] += ti;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package main.laws;
+
+import java.util.Arrays;
+
+public class PhaseTimer implements PhaseTimerMBean {
+
+	/**Durations of one phase of the step or frame. Each sample goes into a
+	 * fixed window of the most recent WINDOW samples and into running totals
+	 * and a running maximum, so recording is a store, two adds and a compare.
+	 * Percentiles are only worked out when they are read, by sorting a copy
+	 * of the window.
+	 *
+	 * A phase is recorded by one thread, and only that thread writes the
+	 * totals. reset() from another thread just raises a flag, which the
+	 * recording thread acts on before its next sample, so a reset is never
+	 * lost or half applied. Until then readers already see zeros. Readers may
+	 * otherwise see a sample or two out of date, which is fine for monitoring.
+	 */
+
+	private static final int WINDOW = 1024; // recent samples kept for percentiles, a power of two
+
+	private final String name;
+	private final long[] window = new long[WINDOW];
+	private volatile long count = 0; // samples since the last reset
+	private volatile long total = 0; // nanoseconds since the last reset
+	private volatile long max = 0; // longest sample since the last reset
+	private volatile boolean resetRequested = false; // set by reset(), cleared by the recording thread
+
+	PhaseTimer(String name) {
+		this.name = name;
+	}
+
+	void record(long nanos) {
+		if (resetRequested) {
+			resetRequested = false;
+			count = 0;
+			total = 0;
+			max = 0;
+		}
+		long c = count;
+		window[(int) (c & (WINDOW - 1))] = nanos;
+		total += nanos;
+		if (nanos > max) {max = nanos;}
+		count = c + 1;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCount() {
+		return resetRequested ? 0 : count;
+	}
+
+	@Override
+	public double getMeanMicros() {
+		long c = getCount();
+		return c == 0 ? 0 : total / 1e3 / c;
+	}
+
+	@Override
+	public double getP50Micros() {
+		return percentile(0.50);
+	}
+
+	@Override
+	public double getP99Micros() {
+		return percentile(0.99);
+	}
+
+	@Override
+	public double getMaxMicros() {
+		return resetRequested ? 0 : max / 1e3;
+	}
+
+	@Override
+	public void reset() {
+		// applied by the recording thread, see record
+		resetRequested = true;
+	}
+
+	private double percentile(double q) {
+		int n = (int) Math.min(getCount(), WINDOW);
+		if (n == 0) {return 0;}
+		long[] sorted = Arrays.copyOf(window, n);
+		Arrays.sort(sorted);
+		int rank = Math.max(0, (int) Math.ceil(q * n) - 1);
+		return sorted[rank] / 1e3;
+	}
+
+}
@@ -0,0 +1,24 @@
+package main.laws;
+
+public interface PhaseTimerMBean {
+
+	/**JMX view of one PhaseTimer. Times are in microseconds. The count,
+	 * mean and maximum cover every sample since the last reset, percentiles
+	 * only the most recent samples.
+	 */
+
+	public String getName();
+
+	public long getCount();
+
+	public double getMeanMicros();
+
+	public double getP50Micros();
+
+	public double getP99Micros();
+
+	public double getMaxMicros();
+
+	public void reset();
+
+}
@@ -0,0 +1,127 @@
+package main.laws;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class PhaseTimers implements PhaseTimersMBean {
+
+	/**Wall-clock timing of the phases a step and a frame are made of, for
+	 * finding where the time goes. A phase is bracketed with start and stop.
+	 * While timing is off, start returns 0 without reading the clock and stop
+	 * returns at once, so the brackets can stay in the hot paths.
+	 *
+	 * Every phase is published as a platform MBean under main.laws, next to
+	 * a PhaseTimers MBean that turns timing on and off. Start the JVM with
+	 * -Dgalaxy.timing=true to time from the first step, or switch it on from
+	 * any JMX console.
+	 */
+
+	public static final int FORCE = 0; // gravity engine, summed over a step
+	public static final int INTEGRATION = 1; // integrator and velocity clamp, less the force
+	public static final int COLLISION = 2; // merging touching bodies
+	public static final int TEMPERATURE = 3; // radiation and energy passes
+	public static final int TRANSITS = 4; // Galaxy.newTransits
+	public static final int PROJECTION = 5; // projecting polygons in Galaxy.getPolygons
+	public static final int SORT = 6; // depth sorting polygons in Galaxy.getPolygons
+	public static final int DRAW = 7; // drawing every polygon to the canvas
+	public static final int INFO = 8; // ControlPane.refreshInfo
+
+	private static final String[] NAMES = {
+		"force", "integration", "collision", "temperature", "transits", "projection", "sort", "draw", "info",
+	};
+	private static final PhaseTimer[] TIMERS = new PhaseTimer[NAMES.length];
+	private static volatile boolean enabled = Boolean.getBoolean("galaxy.timing");
+
+	static {
+		for (int p=0; p<NAMES.length; p++) {
+			TIMERS[p] = new PhaseTimer(NAMES[p]);
+		}
+		register();
+	}
+
+	private PhaseTimers() {}
+
+	public static long start() {
+		// start of a phase, 0 when timing is off
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	public static void stop(int phase, long start) {
+		if (start != 0) {
+			TIMERS[phase].record(System.nanoTime() - start);
+		}
+	}
+
+	public static void record(int phase, long nanos) {
+		// a duration measured elsewhere, only counted while timing is on
+		if (enabled) {
+			TIMERS[phase].record(nanos);
+		}
+	}
+
+	public static boolean active() {
+		return enabled;
+	}
+
+	public static void enable(boolean enabled) {
+		PhaseTimers.enabled = enabled;
+	}
+
+	public static PhaseTimer get(int phase) {
+		return TIMERS[phase];
+	}
+
+	public static String[] summary() {
+		// one line per phase that has been timed
+		String[] lines = new String[NAMES.length];
+		for (int p=0; p<NAMES.length; p++) {
+			PhaseTimer t = TIMERS[p];
+			lines[p] = String.format("%-12s n=%-8d p50 %9.1f us  p99 %9.1f us  max %9.1f us", t.getName(), t.getCount(),
+					t.getP50Micros(), t.getP99Micros(), t.getMaxMicros());
+		}
+		return lines;
+	}
+
+	private static void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(new PhaseTimers(), new ObjectName("main.laws:type=PhaseTimers"));
+			for (PhaseTimer t : TIMERS) {
+				server.registerMBean(t, new ObjectName("main.laws:type=PhaseTimers,phase=" + t.getName()));
+			}
+		} catch (JMException e) {
+			// timing still works locally, it just cannot be watched over JMX
+			System.out.println("PhaseTimers could not register with JMX: " + e.getMessage());
+		}
+	}
+
+
+	/* ====================== */
+	/* ===== JMX SWITCH ===== */
+	/* ====================== */
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		enable(enabled);
+	}
+
+	@Override
+	public String[] getSummary() {
+		return summary();
+	}
+
+	@Override
+	public void reset() {
+		for (PhaseTimer t : TIMERS) {
+			t.reset();
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package main.laws;
+
+public interface PhaseTimersMBean {
+
+	/**JMX switch for PhaseTimers, plus every phase summarised in one table.
+	 */
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled);
+
+	public String[] getSummary();
+
+	public void reset();
+
+}
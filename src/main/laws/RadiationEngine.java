@@ -0,0 +1,234 @@
+package main.laws;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class RadiationEngine {
+
+	/**Radiation pass with the stars held in their own kd-tree. A planet only
+	 * keeps the hottest temperature any single star would give it, and that
+	 * temperature grows with sT^2 * sR / d. Each tree node stores the largest
+	 * sT^2 * sR below it, so with the nearest point of the node's box that
+	 * bounds every star inside. A planet walks the tree brightest-bound first
+	 * and skips any node whose bound cannot beat the temperature it already
+	 * has. Stars that survive are scored with BodyStore.applyTemp itself, so
+	 * kelvin values are the same as comparing against every star.
+	 *
+	 * Planets are split into ranges across a fork/join pool. Each planet is
+	 * written only by its own task.
+	 */
+
+	private static final int LEAF_SIZE = 4; // most stars held by a leaf
+	private static final int MIN_GRAIN = 256; // smallest range of planets worth a task
+	private static final double MARGIN = 1e-9; // relative slack on bounds against rounding
+
+	private ForkJoinPool pool;
+
+	// stars for the current pass, reordered so each node holds a contiguous range
+	private int[] stars = new int[0];
+	private BodyStore bodies;
+
+	// kd-tree nodes, root is node 0, a node's children are left and left+1
+	private int nodeCount;
+	private int[] lo = new int[0], hi = new int[0], left = new int[0];
+	private double[] minX = new double[0], minY = new double[0], minZ = new double[0];
+	private double[] maxX = new double[0], maxY = new double[0], maxZ = new double[0];
+	private double[] brightest = new double[0]; // largest sT^2 * sR of any star below the node
+	private int depth; // deepest node, sizes the walk stacks
+
+	public RadiationEngine(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public void apply(BodyStore bodies, int[] sources, int sourceCount) {
+		// raise each planet's absorbed temperature to the hottest one any source gives it
+		int n = bodies.size();
+		if (sourceCount == 0 || n == 0) {return;}
+		build(bodies, sources, sourceCount);
+
+		if (n <= MIN_GRAIN) {
+			new PlanetRange(0, n, n).compute();
+		} else {
+			int grain = Math.max(MIN_GRAIN, n / (pool.getParallelism() * 8));
+			pool.invoke(new PlanetRange(0, n, grain));
+		}
+	}
+
+
+	/* ====================== */
+	/* ===== STAR INDEX ===== */
+	/* ====================== */
+
+	private void build(BodyStore bodies, int[] sources, int sourceCount) {
+		this.bodies = bodies;
+		if (stars.length < sourceCount) {
+			stars = new int[sourceCount];
+			allocateNodes(2 * sourceCount);
+		}
+		System.arraycopy(sources, 0, stars, 0, sourceCount);
+		nodeCount = 1;
+		depth = 0;
+		split(0, 0, sourceCount, 0);
+	}
+
+	private void split(int node, int from, int to, int level) {
+		lo[node] = from;
+		hi[node] = to;
+		left[node] = -1;
+		depth = Math.max(depth, level);
+
+		double[] x = bodies.x, y = bodies.y, z = bodies.z;
+		double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, z0 = Double.MAX_VALUE;
+		double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE, z1 = -Double.MAX_VALUE;
+		double bright = 0;
+		for (int t=from; t<to; t++) {
+			int s = stars[t];
+			x0 = Math.min(x0, x[s]); x1 = Math.max(x1, x[s]);
+			y0 = Math.min(y0, y[s]); y1 = Math.max(y1, y[s]);
+			z0 = Math.min(z0, z[s]); z1 = Math.max(z1, z[s]);
+			bright = Math.max(bright, luminosity(s));
+		}
+		minX[node] = x0; maxX[node] = x1;
+		minY[node] = y0; maxY[node] = y1;
+		minZ[node] = z0; maxZ[node] = z1;
+		brightest[node] = bright;
+
+		if (to - from <= LEAF_SIZE) {return;}
+
+		// halve along the widest side of the box
+		double[] axis = x;
+		if (y1 - y0 > x1 - x0 && y1 - y0 >= z1 - z0) {
+			axis = y;
+		} else if (z1 - z0 > x1 - x0 && z1 - z0 > y1 - y0) {
+			axis = z;
+		}
+		int mid = (from + to) >>> 1;
+		select(axis, from, to - 1, mid);
+
+		int child = nodeCount;
+		nodeCount += 2;
+		left[node] = child;
+		split(child, from, mid, level + 1);
+		split(child + 1, mid, to, level + 1);
+	}
+
+	private void select(double[] axis, int from, int to, int k) {
+		// quickselect so the star at k has the k-th smallest coordinate in [from, to]
+		while (from < to) {
+			double pivot = axis[stars[(from + to) >>> 1]];
+			int i = from, j = to;
+			while (i <= j) {
+				while (axis[stars[i]] < pivot) {i++;}
+				while (axis[stars[j]] > pivot) {j--;}
+				if (i <= j) {
+					int swap = stars[i]; stars[i] = stars[j]; stars[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				to = j;
+			} else if (k >= i) {
+				from = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private double luminosity(int s) {
+		// sT^2 * sR with the same truncated temperature and meters as BodyStore.applyTemp
+		double sT = (int) bodies.kelvin[s];
+		return sT * sT * bodies.radius[s] * 1000.0;
+	}
+
+	private double bound(int node, double px, double py, double pz, double factor) {
+		// highest temperature any star in the node could give a planet at p
+		double dx = Math.max(0, Math.max(minX[node] - px, px - maxX[node]));
+		double dy = Math.max(0, Math.max(minY[node] - py, py - maxY[node]));
+		double dz = Math.max(0, Math.max(minZ[node] - pz, pz - maxZ[node]));
+		double d = Math.sqrt(dx*dx + dy*dy + dz*dz) * Physics.scaleAU;
+		return Math.sqrt(factor * brightest[node] / (2 * d)) * (1 + MARGIN);
+	}
+
+	private void allocateNodes(int capacity) {
+		lo = new int[capacity];
+		hi = new int[capacity];
+		left = new int[capacity];
+		minX = new double[capacity];
+		minY = new double[capacity];
+		minZ = new double[capacity];
+		maxX = new double[capacity];
+		maxY = new double[capacity];
+		maxZ = new double[capacity];
+		brightest = new double[capacity];
+	}
+
+
+	/* ======================== */
+	/* ===== PLANET WALKS ===== */
+	/* ======================== */
+
+	private class PlanetRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int from, to, grain;
+
+		PlanetRange(int from, int to, int grain) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > grain) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PlanetRange(from, mid, grain), new PlanetRange(mid, to, grain));
+				return;
+			}
+
+			int[] stack = new int[depth + 2];
+			for (int i=from; i<to; i++) {
+				if (!bodies.star[i]) {
+					walk(i, stack);
+				}
+			}
+		}
+
+		private void walk(int i, int[] stack) {
+			double px = bodies.x[i], py = bodies.y[i], pz = bodies.z[i];
+			// planet side of the formula, sqrt(1 - pA - pE / 2)
+			double factor = Math.sqrt(1 - bodies.albedo[i] - bodies.emissivity[i] / 2);
+
+			int top = 0;
+			stack[top++] = 0;
+			while (top > 0) {
+				int node = stack[--top];
+				// a star only wins with a temperature above the one already absorbed
+				if (bound(node, px, py, pz, factor) < bodies.absorbed[i] + 1) {continue;}
+
+				if (left[node] < 0) {
+					for (int t=lo[node]; t<hi[node]; t++) {
+						bodies.applyTemp(i, stars[t]);
+					}
+				} else {
+					// push the dimmer child first so the brighter one is walked first
+					int a = left[node], b = left[node] + 1;
+					if (bound(a, px, py, pz, factor) > bound(b, px, py, pz, factor)) {
+						stack[top++] = b;
+						stack[top++] = a;
+					} else {
+						stack[top++] = a;
+						stack[top++] = b;
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package main.laws;
+
+public class SemiImplicitEuler implements Integrator {
+
+	/**First order semi-implicit (symplectic) Euler step: velocity is updated
+	 * from this step's acceleration, then position from the new velocity.
+	 * This is the scheme the original per-node update used.
+	 */
+
+	@Override
+	public void step(BodyStore bodies, GravityEngine gravity, double dt) {
+		bodies.clearAccelerations();
+		gravity.accumulate(bodies);
+
+		// change in velocity. a = (v2 - v1) / t, so v2 = v1 + (a * t)
+		bodies.kick(dt);
+
+		// change in position. v = (d2 - d1) / t, so d2 = d1 + (v * t), or delta_d = v * t
+		bodies.drift(dt);
+	}
+
+	@Override
+	public String getName() {
+		return "Euler";
+	}
+
+}
@@ -0,0 +1,83 @@
+package main.laws;
+
+public class SimdGravity implements GravityEngine {
+
+	/**Exact all-pairs gravity vectorised with jdk.incubator.vector. The
+	 * vector kernel is kept in the separate simd/ source root and loaded by
+	 * name, so neither compiling nor running src/ needs the module. To use it,
+	 * compile simd/ on top of src/ with --add-modules jdk.incubator.vector,
+	 * put it on the classpath, and run with the same flag.
+	 *
+	 * The kernel is loaded on first use. Before it is trusted it must match
+	 * the scalar BruteForce loop on a small disc of bodies. When it is
+	 * missing or disagrees, this engine uses the scalar loop, so it is
+	 * always safe to select.
+	 */
+
+	static final String KERNEL = "main.laws.VectorKernel";
+	static final double TOLERANCE = 1e-12; // mean relative error allowed against the scalar loop
+
+	private final GravityEngine scalar = new BruteForce();
+	private GravityEngine kernel; // vector kernel once loaded and verified, null for the scalar loop
+	private boolean loaded = false;
+
+	public boolean isVectorized() {
+		return kernel() != null;
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		GravityEngine engine = kernel();
+		(engine != null ? engine : scalar).accumulate(bodies);
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies, int[] targets, int count) {
+		GravityEngine engine = kernel();
+		(engine != null ? engine : scalar).accumulate(bodies, targets, count);
+	}
+
+	@Override
+	public String getName() {
+		GravityEngine engine = kernel();
+		return engine != null ? engine.getName() : "SIMD (scalar)";
+	}
+
+	private GravityEngine kernel() {
+		if (!loaded) {
+			loaded = true;
+			kernel = load();
+		}
+		return kernel;
+	}
+
+	static GravityEngine load() {
+		// the verified vector kernel, or null with the reason printed
+		if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			return null;
+		}
+		GravityEngine candidate;
+		try {
+			candidate = (GravityEngine) Class.forName(KERNEL).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			System.out.println("SimdGravity vector kernel unavailable, using scalar loop: " + e);
+			return null;
+		}
+
+		// 257 bodies leave a remainder for the scalar tail whatever the vector width
+		GravityCheck check = new GravityCheck();
+		try {
+			check.compare(candidate, GravityCheck.randomDisc(256, 1));
+		} catch (LinkageError e) {
+			System.out.println("SimdGravity vector kernel unavailable, using scalar loop: " + e);
+			return null;
+		}
+		if (!(check.getMeanError() <= TOLERANCE)) {
+			System.out.printf("SimdGravity vector kernel disagrees with the scalar loop (mean error %.3e), using scalar loop%n",
+					check.getMeanError());
+			return null;
+		}
+		return candidate;
+	}
+
+}
@@ -0,0 +1,415 @@
+package main.laws;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class Simulation {
+
+	/**The physics half of a Galaxy, with no javafx dependency. Owns the body
+	 * store, the gravity engine and integrator in use, and the rules that
+	 * create and change bodies. Galaxy wraps one of these for the GUI, and
+	 * BatchRunner drives one directly on machines without a display.
+	 */
+
+	public static final int GRAVITY_ENGINES = 7; // engines reachable by index, see makeGravityEngine
+	public static final int INTEGRATORS = 4; // integrators reachable by index, see useIntegrator
+
+	private int seed;
+	private int galaxyRadius = 15;
+	private Random random; // source of values generated while running
+	private long galaxySeed; // builds the current galaxy, see GalaxyGenerator
+
+	private BodyStore bodies = new BodyStore(); // physical state of every object
+	private int[] energySources = new int[8]; // indices of every star
+	private int sourceCount = 0;
+	private GravityEngine gravity = new BruteForce(); // force phase strategy
+	private TimedGravity timedGravity = new TimedGravity(); // times the current engine while PhaseTimers is on
+	private int gravityIndex = 0; // position of the current engine in the cycle
+	private ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors()); // workers for parallel passes
+	private RadiationEngine radiation = new RadiationEngine(pool); // temperature pass
+	private CollisionEngine collisions = new CollisionEngine(); // merges touching bodies
+	private boolean colliding = true; // run the collision stage after each step
+	private int merged = 0; // bodies merged away in the last step
+	private Integrator integrator = new SemiImplicitEuler(); // time-stepping scheme
+	private int integratorIndex = 0; // position of the current integrator in the cycle
+	private double timeStep = Physics.timeScale; // seconds advanced per update
+	private long steps = 0; // unpaused steps taken
+	private double elapsed = 0; // simulated seconds over those steps
+	private TrajectoryRecorder recorder; // samples trajectories after each step, null if not recording
+	private Diagnostics diagnostics; // samples conserved quantities after each step, null if off
+
+
+	/* ======================== */
+	/* ===== CONSTRUCTORS ===== */
+	/* ======================== */
+
+	public Simulation(int seed) {
+		this(seed, new Random().nextLong());
+	}
+
+	public Simulation(int seed, long randomSeed) {
+		// the same seed always builds the same galaxy, see GalaxyGenerator
+		this.random = new Random(randomSeed);
+		this.galaxySeed = randomSeed;
+		newSeed(seed);
+	}
+
+	public void reset() {
+		// a new galaxy each time, drawn from the seeded generator so the sequence repeats
+		galaxySeed = random.nextLong();
+		integrator.reset();
+		newSeed(seed - 1);
+	}
+
+	private void newSeed(int planets) {
+		// one star at the origin, then procedurally placed planets, built in parallel
+		GalaxyGenerator.generate(bodies, Math.max(planets, 0), galaxySeed, galaxyRadius, pool);
+		findEnergySources();
+
+		this.seed = bodies.size(); // since there is a minimum number of objects even if seed is zero
+		System.out.printf("Galaxy() %d object seed complete%n", planets);
+	}
+
+	private void findEnergySources() {
+		sourceCount = 0;
+		for (int i=0; i<bodies.size(); i++) {
+			if (bodies.star[i]) {
+				addEnergySource(i);
+			}
+		}
+	}
+
+	void restored(int[] sources, int count) {
+		// called by Checkpoint once the store holds a saved state
+		sourceCount = 0;
+		for (int s=0; s<count; s++) {
+			addEnergySource(sources[s]);
+		}
+		seed = bodies.size();
+		merged = 0;
+		integrator.reset();
+	}
+
+	private void addEnergySource(int index) {
+		if (sourceCount == energySources.length) {
+			energySources = Arrays.copyOf(energySources, sourceCount * 2);
+		}
+		energySources[sourceCount++] = index;
+	}
+
+
+	/* ============================ */
+	/* ===== UPDATING OBJECTS ===== */
+	/* ============================ */
+
+	public void step(boolean isPaused) {
+
+		// if physics are not paused...
+		merged = 0;
+		if (!isPaused) {
+			// apply physical forces and advance positions, then hold everything under light speed.
+			// while timing, the engine is wrapped so force time can be taken out of the integrator's
+			long start = PhaseTimers.start();
+			integrator.step(bodies, start != 0 ? timedGravity : gravity, timeStep);
+			bodies.clampVelocities(Physics.C);
+			if (start != 0) {
+				long force = timedGravity.take();
+				PhaseTimers.record(PhaseTimers.FORCE, force);
+				PhaseTimers.record(PhaseTimers.INTEGRATION, System.nanoTime() - start - force);
+			}
+
+			// merge bodies that ran into each other, indices after a merged body shift down
+			start = PhaseTimers.start();
+			boolean merging = colliding && collisions.merge(bodies) > 0;
+			PhaseTimers.stop(PhaseTimers.COLLISION, start);
+			if (merging) {
+				merged = collisions.getMerged();
+				findEnergySources();
+				integrator.reset();
+				if (recorder != null) {
+					recorder.remap(collisions);
+				}
+			}
+		}
+
+		// FIXME still do this if isPaused, because space can be contracted, affecting energy
+		long start = PhaseTimers.start();
+		radiation.apply(bodies, energySources, sourceCount);
+		if (!isPaused) {
+			// apply new temperature for planets only
+			for (int i=0; i<bodies.size(); i++) {
+				bodies.applyEnergy(i);
+			}
+		}
+		PhaseTimers.stop(PhaseTimers.TEMPERATURE, start);
+
+		if (!isPaused) {
+			steps++;
+			elapsed += timeStep;
+			if (recorder != null) {
+				recorder.sample(bodies, steps, elapsed);
+			}
+			if (diagnostics != null) {
+				diagnostics.sample(bodies, gravity, steps, elapsed);
+			}
+		}
+	}
+
+
+	/* ============================== */
+	/* ===== MANIPULATE OBJECTS ===== */
+	/* ============================== */
+
+	public void resetVelocity(int i) {
+		int range = bodies.star[i] ? 10 : 20000;
+		bodies.vx[i] = random.nextInt(-range, range) / Physics.scaleAU;
+		bodies.vy[i] = random.nextInt(-range, range) / Physics.scaleAU;
+		bodies.vz[i] = random.nextInt(-range / 2, range / 2) / Physics.scaleAU;
+	}
+
+	public void scaleVelocity(double scale) {
+		for (int i=0; i<bodies.size(); i++) {
+			bodies.vx[i] *= scale;
+			bodies.vy[i] *= scale;
+			bodies.vz[i] *= scale;
+		}
+	}
+
+	public void scaleSpace(double scale) {
+		for (int i=0; i<bodies.size(); i++) {
+			bodies.x[i] *= scale;
+			bodies.y[i] *= scale;
+			bodies.z[i] *= scale;
+		}
+		integrator.reset();
+	}
+
+	public double scaleGravity(double scale) {
+		// accelerations carried over by the integrator were found with the old constant
+		double g = Physics.scaleG(scale);
+		integrator.reset();
+		return g;
+	}
+
+	public boolean makeStar(int index) {
+		// turn a planet into a new energy source, returns false if it already was one
+		if (index < 0 || index >= bodies.size() || bodies.star[index]) {return false;}
+		int kelvin = random.nextInt(3500, 12000);
+		bodies.star[index] = true;
+		bodies.kelvin[index] = kelvin;
+		bodies.baseKelvin[index] = kelvin;
+		bodies.mass[index] = 1.989e30;
+		bodies.radius[index] = 695700;
+		resetVelocity(index);
+		addEnergySource(index);
+		integrator.reset();
+		return true;
+	}
+
+	public void scaleEnergy(double scale) {
+		for (int s=0; s<sourceCount; s++) {
+			int i = energySources[s];
+			bodies.kelvin[i] = (int) (bodies.baseKelvin[i] * scale);
+		}
+	}
+
+	public void resetEnergy() {
+		for (int s=0; s<sourceCount; s++) {
+			bodies.kelvin[energySources[s]] = random.nextInt(7000, 11000);
+		}
+	}
+
+
+	/* ============================= */
+	/* ===== SOLVERS AND STATE ===== */
+	/* ============================= */
+
+	public GravityEngine getGravityEngine() {
+		return gravity;
+	}
+
+	public void setGravityEngine(GravityEngine gravity) {
+		this.gravity = gravity;
+		integrator.reset();
+	}
+
+	public GravityEngine cycleGravityEngine() {
+		// step through the available solvers in order
+		return useGravityEngine((gravityIndex + 1) % GRAVITY_ENGINES);
+	}
+
+	public GravityEngine useGravityEngine(int index) {
+		gravityIndex = index;
+		gravity = makeGravityEngine(index);
+		integrator.reset();
+		return gravity;
+	}
+
+	private GravityEngine makeGravityEngine(int index) {
+		switch (index) {
+			case 1: return new BarnesHut();
+			case 2: return new ParallelGravity(pool);
+			case 3: return new SymmetricGravity();
+			case 4: return new SimdGravity();
+			case 5: return new ParticleMesh();
+			case 6: return new FastMultipole();
+			default: return new BruteForce();
+		}
+	}
+
+	public Integrator getIntegrator() {
+		return integrator;
+	}
+
+	public void setIntegrator(Integrator integrator) {
+		// an integrator handed over from elsewhere may carry accelerations from another store
+		this.integrator = integrator;
+		integrator.reset();
+	}
+
+	public Integrator cycleIntegrator() {
+		// step through the available integrators in order
+		return useIntegrator((integratorIndex + 1) % INTEGRATORS);
+	}
+
+	public Integrator useIntegrator(int index) {
+		integratorIndex = index;
+		switch (index) {
+			case 1: integrator = new Leapfrog(); break;
+			case 2: integrator = new VelocityVerlet(); break;
+			case 3: integrator = new BlockTimestep(); break;
+			default: integrator = new SemiImplicitEuler();
+		}
+		return integrator;
+	}
+
+	public double getTimeStep() {
+		return timeStep;
+	}
+
+	public void setTimeStep(double timeStep) {
+		this.timeStep = timeStep;
+	}
+
+	public long getGalaxySeed() {
+		return galaxySeed;
+	}
+
+	public long getSteps() {
+		return steps;
+	}
+
+	public double getElapsed() {
+		return elapsed;
+	}
+
+	public TrajectoryRecorder getRecorder() {
+		return recorder;
+	}
+
+	public void setRecorder(TrajectoryRecorder recorder) {
+		// the caller closes the recorder once it is replaced or no longer needed
+		this.recorder = recorder;
+	}
+
+	public Diagnostics getDiagnostics() {
+		return diagnostics;
+	}
+
+	public void setDiagnostics(Diagnostics diagnostics) {
+		this.diagnostics = diagnostics;
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	public void setParallelism(int parallelism) {
+		// replace the worker pool, rebuilding the current engine if it used the old one
+		ForkJoinPool old = pool;
+		pool = new ForkJoinPool(parallelism);
+		radiation.setPool(pool);
+		if (gravity instanceof ParallelGravity) {
+			gravity = new ParallelGravity(pool);
+		}
+		old.shutdown();
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public BodyStore getBodyStore() {
+		return bodies;
+	}
+
+	public int size() {
+		return bodies.size();
+	}
+
+	public CollisionEngine getCollisions() {
+		return collisions;
+	}
+
+	public boolean isColliding() {
+		return colliding;
+	}
+
+	public void setColliding(boolean colliding) {
+		this.colliding = colliding;
+	}
+
+	public int getMerged() {
+		return merged;
+	}
+
+	public int getSourceCount() {
+		return sourceCount;
+	}
+
+	public int getEnergySource(int s) {
+		return energySources[s];
+	}
+
+	public boolean isStar(int index) {
+		return bodies.star[index];
+	}
+
+	private class TimedGravity implements GravityEngine {
+
+		// passes every call on to the current engine, adding up the time spent in it
+		private long nanos = 0;
+
+		long take() {
+			long taken = nanos;
+			nanos = 0;
+			return taken;
+		}
+
+		@Override
+		public void accumulate(BodyStore bodies) {
+			long start = System.nanoTime();
+			gravity.accumulate(bodies);
+			nanos += System.nanoTime() - start;
+		}
+
+		@Override
+		public void accumulate(BodyStore bodies, int[] targets, int count) {
+			long start = System.nanoTime();
+			gravity.accumulate(bodies, targets, count);
+			nanos += System.nanoTime() - start;
+		}
+
+		@Override
+		public double potential(BodyStore bodies) {
+			return gravity.potential(bodies);
+		}
+
+		@Override
+		public String getName() {
+			return gravity.getName();
+		}
+	}
+
+}
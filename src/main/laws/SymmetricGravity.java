@@ -0,0 +1,78 @@
+package main.laws;
+
+public class SymmetricGravity implements GravityEngine {
+
+	/**Exact all-pairs gravity that visits each unordered pair once. The shared
+	 * distance term G / r^3 is computed a single time and applied to both
+	 * bodies with equal and opposite sign, scaled by the other body's mass
+	 * (Newton's third law). Pairs are walked in square tiles of bodies so the
+	 * columns being read stay resident in cache.
+	 */
+
+	public static final int DEFAULT_TILE = 256;
+
+	private final int tile; // bodies per tile edge
+
+	public SymmetricGravity() {
+		this(DEFAULT_TILE);
+	}
+
+	public SymmetricGravity(int tile) {
+		this.tile = Math.max(tile, 1);
+	}
+
+	@Override
+	public void accumulate(BodyStore bodies) {
+		int n = bodies.size();
+		for (int bi=0; bi<n; bi+=tile) {
+			int iEnd = Math.min(bi + tile, n);
+			for (int bj=bi; bj<n; bj+=tile) {
+				int jEnd = Math.min(bj + tile, n);
+				accumulateTile(bodies, bi, iEnd, bj, jEnd);
+			}
+		}
+	}
+
+	private static void accumulateTile(BodyStore bodies, int iStart, int iEnd, int jStart, int jEnd) {
+		double[] x = bodies.x, y = bodies.y, z = bodies.z, m = bodies.mass;
+		double[] ax = bodies.ax, ay = bodies.ay, az = bodies.az;
+		double scale = Physics.scaleAU;
+		double G = Physics.G;
+
+		for (int i=iStart; i<iEnd; i++) {
+			double xi = x[i], yi = y[i], zi = z[i], mi = m[i];
+			double sx = 0, sy = 0, sz = 0;
+
+			// on the diagonal tile only the upper triangle is visited
+			for (int j=(jStart == iStart ? i + 1 : jStart); j<jEnd; j++) {
+				double dx = x[j] - xi;
+				double dy = y[j] - yi;
+				double dz = z[j] - zi;
+				double r = Math.sqrt(dx*dx + dy*dy + dz*dz) * scale;
+				double k = G / (r * r * r);
+				if (Double.isInfinite(k)) {
+					continue;
+				}
+
+				// i is pulled toward j, j is pulled toward i
+				double gi = k * m[j];
+				double gj = k * mi;
+				sx += dx * gi;
+				sy += dy * gi;
+				sz += dz * gi;
+				ax[j] -= dx * gj;
+				ay[j] -= dy * gj;
+				az[j] -= dz * gj;
+			}
+			ax[i] += sx;
+			ay[i] += sy;
+			az[i] += sz;
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "Symmetric Pairs";
+	}
+
+}
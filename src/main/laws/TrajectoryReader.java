@@ -0,0 +1,222 @@
+package main.laws;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class TrajectoryReader implements AutoCloseable {
+
+	/**Reads a file written by TrajectoryRecorder through read-only memory
+	 * maps. Each map covers a whole number of frames, up to about 1 GB, so any
+	 * frame is reached without copying the file. The frame count comes from
+	 * the file length, so a recording that was never closed can still be
+	 * read up to its last complete frame.
+	 *
+	 * read fills a BodyStore with the state at any time between the first
+	 * and last frame. Positions between two frames follow the cubic Hermite
+	 * curve through both recorded positions and velocities. Velocities and
+	 * temperatures are blended linearly. Mass is not recorded and reads as
+	 * zero. Where a merge changed the body count between two frames, the
+	 * earlier frame is shown unchanged until the later one is reached.
+	 */
+
+	private static final long SEGMENT = 1L << 30; // bytes per map, rounded down to whole frames
+
+	private final FileChannel channel;
+	private final int capacity; // body slots in every frame
+	private final int cadence; // steps between recorded frames
+	private final long stride; // bytes per frame
+	private final int frames;
+	private final int perSegment; // frames in each map
+	private final MappedByteBuffer[] segments;
+	private final double[] times; // simulated time of every frame, for seeking
+
+	public TrajectoryReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (channel.size() < TrajectoryRecorder.HEADER) {
+				throw new IOException("TrajectoryReader file too short for a header: " + path);
+			}
+			MappedByteBuffer header = map(0, TrajectoryRecorder.HEADER);
+			if (header.getInt() != TrajectoryRecorder.MAGIC) {
+				throw new IOException("TrajectoryReader not a trajectory file: " + path);
+			}
+			int version = header.getInt();
+			if (version != TrajectoryRecorder.VERSION) {
+				throw new IOException("TrajectoryReader unsupported version " + version);
+			}
+			capacity = header.getInt();
+			cadence = header.getInt();
+			header.getLong(); // frame count written on close, the file length is used instead
+			stride = header.getLong();
+			if (stride != TrajectoryRecorder.frameStride(capacity) || stride > SEGMENT) {
+				throw new IOException("TrajectoryReader unsupported frame size " + stride);
+			}
+
+			frames = (int) ((channel.size() - TrajectoryRecorder.HEADER) / stride);
+			perSegment = (int) (SEGMENT / stride);
+			segments = new MappedByteBuffer[(frames + perSegment - 1) / perSegment];
+			for (int s=0; s<segments.length; s++) {
+				int first = s * perSegment;
+				int count = Math.min(perSegment, frames - first);
+				segments[s] = map(TrajectoryRecorder.HEADER + first * stride, count * stride);
+			}
+
+			times = new double[frames];
+			for (int k=0; k<frames; k++) {
+				times[k] = segment(k).getDouble(offset(k) + 8);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public int getFrames() {
+		return frames;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getCadence() {
+		return cadence;
+	}
+
+	public long getStep(int frame) {
+		return segment(frame).getLong(offset(frame));
+	}
+
+	public double getTime(int frame) {
+		return times[frame];
+	}
+
+	public int getCount(int frame) {
+		return segment(frame).getInt(offset(frame) + 16);
+	}
+
+	public double getStartTime() {
+		return frames == 0 ? 0 : times[0];
+	}
+
+	public double getEndTime() {
+		return frames == 0 ? 0 : times[frames - 1];
+	}
+
+	public int frameAt(double time) {
+		// last frame recorded at or before time, the first frame if time is earlier
+		int lo = 0, hi = frames - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (times[mid] <= time) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	public void read(double time, BodyStore bodies) {
+		// fill bodies with the recorded state at time, clamped to the recording
+		if (frames == 0) {
+			bodies.resize(0);
+			return;
+		}
+		time = Math.max(getStartTime(), Math.min(getEndTime(), time));
+		int k = frameAt(time);
+		int count = getCount(k);
+		bodies.resize(count);
+
+		if (k == frames - 1 || getCount(k + 1) != count || times[k + 1] <= times[k]) {
+			copy(k, count, bodies);
+			return;
+		}
+
+		// cubic Hermite basis at s through both frames
+		double span = times[k + 1] - times[k];
+		double s = (time - times[k]) / span;
+		double s2 = s * s, s3 = s2 * s;
+		double h00 = 2*s3 - 3*s2 + 1, h10 = (s3 - 2*s2 + s) * span;
+		double h01 = -2*s3 + 3*s2, h11 = (s3 - s2) * span;
+
+		MappedByteBuffer a = segment(k), b = segment(k + 1);
+		long ka = offset(k), kb = offset(k + 1);
+		for (int i=0; i<count; i++) {
+			double ax = column(a, ka, 0, i), ay = column(a, ka, 1, i), az = column(a, ka, 2, i);
+			double avx = column(a, ka, 3, i), avy = column(a, ka, 4, i), avz = column(a, ka, 5, i);
+			double bx = column(b, kb, 0, i), by = column(b, kb, 1, i), bz = column(b, kb, 2, i);
+			double bvx = column(b, kb, 3, i), bvy = column(b, kb, 4, i), bvz = column(b, kb, 5, i);
+			bodies.x[i] = h00 * ax + h10 * avx + h01 * bx + h11 * bvx;
+			bodies.y[i] = h00 * ay + h10 * avy + h01 * by + h11 * bvy;
+			bodies.z[i] = h00 * az + h10 * avz + h01 * bz + h11 * bvz;
+			bodies.vx[i] = avx + (bvx - avx) * s;
+			bodies.vy[i] = avy + (bvy - avy) * s;
+			bodies.vz[i] = avz + (bvz - avz) * s;
+			double kelvin = column(a, ka, 6, i);
+			bodies.kelvin[i] = kelvin + (column(b, kb, 6, i) - kelvin) * s;
+			bodies.radius[i] = column(a, ka, 7, i);
+			bodies.star[i] = star(a, ka, i);
+			clearUnrecorded(bodies, i);
+		}
+	}
+
+	private void copy(int k, int count, BodyStore bodies) {
+		MappedByteBuffer a = segment(k);
+		long ka = offset(k);
+		for (int i=0; i<count; i++) {
+			bodies.x[i] = column(a, ka, 0, i);
+			bodies.y[i] = column(a, ka, 1, i);
+			bodies.z[i] = column(a, ka, 2, i);
+			bodies.vx[i] = column(a, ka, 3, i);
+			bodies.vy[i] = column(a, ka, 4, i);
+			bodies.vz[i] = column(a, ka, 5, i);
+			bodies.kelvin[i] = column(a, ka, 6, i);
+			bodies.radius[i] = column(a, ka, 7, i);
+			bodies.star[i] = star(a, ka, i);
+			clearUnrecorded(bodies, i);
+		}
+	}
+
+	private static void clearUnrecorded(BodyStore bodies, int i) {
+		bodies.mass[i] = 0;
+		bodies.baseKelvin[i] = bodies.kelvin[i];
+		bodies.absorbed[i] = 0;
+		bodies.albedo[i] = 0;
+		bodies.emissivity[i] = 0;
+	}
+
+	private double column(MappedByteBuffer buffer, long frame, int column, int i) {
+		return buffer.getDouble((int) (frame + TrajectoryRecorder.FRAME_HEADER + 8L * ((long) column * capacity + i)));
+	}
+
+	private boolean star(MappedByteBuffer buffer, long frame, int i) {
+		return buffer.get((int) (frame + TrajectoryRecorder.FRAME_HEADER + 8L * TrajectoryRecorder.COLUMNS * capacity + i)) != 0;
+	}
+
+	private MappedByteBuffer segment(int frame) {
+		return segments[frame / perSegment];
+	}
+
+	private int offset(int frame) {
+		// start of the frame within its segment
+		return (int) ((frame % perSegment) * stride);
+	}
+
+	private MappedByteBuffer map(long at, long length) throws IOException {
+		MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, at, length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
@@ -0,0 +1,250 @@
+package main.laws;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class TrajectoryRecorder {
+
+	/**Records body trajectories to a file while a simulation runs. Every
+	 * cadence steps the stepping thread copies the recorded bodies into a
+	 * free frame of a preallocated ring and hands it to a writer thread,
+	 * which gathers waiting frames and writes them out in one call. The
+	 * stepping thread only ever copies columns into memory.
+	 *
+	 * When every frame is still waiting for the disk, BLOCK makes the
+	 * stepping thread wait for one to free up, and DROP skips the sample and
+	 * counts it in getDropped.
+	 *
+	 * Frames have a fixed size, so frame k starts at HEADER + k * stride and
+	 * a reader can map any of them directly. Each frame holds its step,
+	 * simulated time and body count, then capacity slots of each column:
+	 * x y z vx vy vz kelvin radius as doubles, then star as bytes.
+	 */
+
+	public static final int BLOCK = 0; // wait for the writer when the ring is full
+	public static final int DROP = 1; // skip the sample when the ring is full
+
+	static final int MAGIC = 0x5452414a; // "TRAJ"
+	static final int VERSION = 1;
+	static final int HEADER = 64; // file header bytes
+	static final int FRAME_HEADER = 32; // step, time, count and padding ahead of each frame
+	static final int COLUMNS = 8; // double columns per frame
+
+	private static final int DEFAULT_RING = 64; // frames held in memory
+	private static final int CHUNK = 16; // most frames gathered into one write
+
+	private final FileChannel channel;
+	private final int capacity; // body slots in every frame
+	private final long stride; // bytes per frame
+	private final int cadence; // steps between samples
+	private final int policy;
+	private int[] selected; // store indices recorded, null for every body
+
+	private final BlockingQueue<ByteBuffer> free; // frames ready to fill
+	private final BlockingQueue<ByteBuffer> full; // frames waiting for the writer
+	private final ByteBuffer stop = ByteBuffer.allocate(0); // tells the writer to finish
+	private final Thread writer;
+	private volatile IOException failure; // first write error, rethrown by close
+	private volatile long written = 0; // frames on disk
+	private volatile long dropped = 0; // samples skipped under DROP
+	private long sampled = 0; // steps offered to sample
+	private boolean closed = false;
+
+	public TrajectoryRecorder(Path path, int capacity, int cadence, int policy) throws IOException {
+		this(path, capacity, cadence, policy, DEFAULT_RING);
+	}
+
+	public TrajectoryRecorder(Path path, int capacity, int cadence, int policy, int ring) throws IOException {
+		if (capacity < 1 || cadence < 1 || ring < 1) {
+			throw new IllegalArgumentException("TrajectoryRecorder needs a positive capacity, cadence and ring");
+		}
+		this.capacity = capacity;
+		this.cadence = cadence;
+		this.policy = policy;
+		this.stride = frameStride(capacity);
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		writeHeader();
+
+		free = new ArrayBlockingQueue<ByteBuffer>(ring);
+		full = new ArrayBlockingQueue<ByteBuffer>(ring + 1);
+		for (int f=0; f<ring; f++) {
+			free.add(ByteBuffer.allocateDirect((int) stride).order(ByteOrder.LITTLE_ENDIAN));
+		}
+
+		writer = new Thread(this::drain, "trajectory-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	static long frameStride(int capacity) {
+		// frame header, the double columns, then the star bytes padded to a whole double
+		return FRAME_HEADER + 8L * COLUMNS * capacity + ((capacity + 7) & ~7);
+	}
+
+	public void select(int[] indices) {
+		// record only these store indices, in this order, or every body if null
+		selected = indices == null ? null : indices.clone();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getCadence() {
+		return cadence;
+	}
+
+	public long getWritten() {
+		return written;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+
+	/* =========================== */
+	/* ===== STEPPING THREAD ===== */
+	/* =========================== */
+
+	public void remap(CollisionEngine collisions) {
+		// follow selected bodies through a merge, a merged body is followed by its survivor
+		if (selected == null) {return;}
+		int[] remap = collisions.getRemap();
+		for (int k=0; k<selected.length; k++) {
+			selected[k] = remap[selected[k]];
+		}
+	}
+
+	public void sample(BodyStore bodies, long step, double time) {
+		// called after every step, copies a frame every cadence steps
+		if (closed || sampled++ % cadence != 0) {return;}
+
+		ByteBuffer frame;
+		if (policy == DROP) {
+			frame = free.poll();
+			if (frame == null) {
+				dropped++;
+				return;
+			}
+		} else {
+			try {
+				frame = free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+
+		int count = Math.min(selected == null ? bodies.size() : selected.length, capacity);
+		frame.clear();
+		frame.putLong(step).putDouble(time).putInt(count).putInt(0).putLong(0);
+
+		double[][] columns = {
+			bodies.x, bodies.y, bodies.z, bodies.vx, bodies.vy, bodies.vz, bodies.kelvin, bodies.radius,
+		};
+		for (int c=0; c<COLUMNS; c++) {
+			frame.position((int) (FRAME_HEADER + 8L * c * capacity));
+			DoubleBuffer column = frame.asDoubleBuffer();
+			if (selected == null) {
+				column.put(columns[c], 0, count);
+			} else {
+				for (int k=0; k<count; k++) {
+					column.put(columns[c][selected[k]]);
+				}
+			}
+		}
+		frame.position((int) (FRAME_HEADER + 8L * COLUMNS * capacity));
+		for (int k=0; k<count; k++) {
+			frame.put((byte) (bodies.star[selected == null ? k : selected[k]] ? 1 : 0));
+		}
+
+		frame.clear();
+		full.add(frame);
+	}
+
+	public void close() throws IOException {
+		// let the writer finish every waiting frame, then record the frame count
+		if (closed) {return;}
+		closed = true;
+		full.add(stop);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			writeHeader();
+		} finally {
+			channel.close();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+
+	/* ========================= */
+	/* ===== WRITER THREAD ===== */
+	/* ========================= */
+
+	private void drain() {
+		ByteBuffer[] chunk = new ByteBuffer[CHUNK];
+		boolean running = true;
+		while (running) {
+			int frames = 0;
+			try {
+				chunk[frames++] = full.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			// gather whatever else is already waiting into the same write
+			while (frames < CHUNK && chunk[frames - 1] != stop && full.peek() != null) {
+				chunk[frames++] = full.poll();
+			}
+			if (chunk[frames - 1] == stop) {
+				frames--;
+				running = false;
+			}
+
+			if (failure == null) {
+				try {
+					long remaining = frames * stride;
+					while (remaining > 0) {
+						remaining -= channel.write(chunk, 0, frames);
+					}
+					written += frames;
+				} catch (IOException e) {
+					failure = e;
+				}
+			}
+			for (int f=0; f<frames; f++) {
+				free.add(chunk[f]);
+				chunk[f] = null;
+			}
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(cadence);
+		header.putLong(written).putLong(stride);
+		header.putDouble(Physics.G).putDouble(Physics.scaleAU);
+		header.clear();
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+		if (channel.position() < HEADER) {
+			channel.position(HEADER);
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package main.laws;
+
+public class VelocityVerlet implements Integrator {
+
+	/**Second order velocity-Verlet. Positions advance with the current velocity
+	 * and acceleration, x += v*dt + a*dt^2/2, then velocities advance with the
+	 * mean of the old and new accelerations. Like leapfrog it needs a single
+	 * force evaluation per step and is time-reversible.
+	 */
+
+	private int primed = -1; // body count the stored accelerations belong to
+	private double[] oldX = new double[0], oldY = new double[0], oldZ = new double[0];
+
+	@Override
+	public void step(BodyStore bodies, GravityEngine gravity, double dt) {
+		int n = bodies.size();
+		if (primed != n) {
+			bodies.clearAccelerations();
+			gravity.accumulate(bodies);
+		}
+		if (oldX.length < n) {
+			oldX = new double[n];
+			oldY = new double[n];
+			oldZ = new double[n];
+		}
+
+		double half = dt * dt / 2;
+		for (int i=0; i<n; i++) {
+			bodies.x[i] += bodies.vx[i] * dt + bodies.ax[i] * half;
+			bodies.y[i] += bodies.vy[i] * dt + bodies.ay[i] * half;
+			bodies.z[i] += bodies.vz[i] * dt + bodies.az[i] * half;
+			oldX[i] = bodies.ax[i];
+			oldY[i] = bodies.ay[i];
+			oldZ[i] = bodies.az[i];
+		}
+
+		bodies.clearAccelerations();
+		gravity.accumulate(bodies);
+
+		for (int i=0; i<n; i++) {
+			bodies.vx[i] += (oldX[i] + bodies.ax[i]) * dt / 2;
+			bodies.vy[i] += (oldY[i] + bodies.ay[i]) * dt / 2;
+			bodies.vz[i] += (oldZ[i] + bodies.az[i]) * dt / 2;
+		}
+
+		primed = n;
+	}
+
+	@Override
+	public void reset() {
+		primed = -1;
+	}
+
+	@Override
+	public String getName() {
+		return "Velocity Verlet";
+	}
+
+}
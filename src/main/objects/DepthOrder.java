@@ -0,0 +1,190 @@
+package main.objects;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+public class DepthOrder {
+
+	/**Keeps the polygons of a frame in painter's order, farthest from the
+	 * camera first. Polygons are sorted on a float key instead of through a
+	 * comparator. Last frame's order is kept between frames, because bodies
+	 * and the camera move only a little from one frame to the next. Each
+	 * frame starts from that order and an insertion sort repairs it in
+	 * close to linear time. If a jump in the camera scrambles the order so
+	 * that the insertion sort starts moving too much, it gives up and a
+	 * radix sort on the key bits orders everything at once.
+	 *
+	 * Polygons with a NaN distance get the farthest key, so they are drawn
+	 * first. The order is total and no comparison can fail.
+	 */
+
+	private static final int MOVES_PER_POLYGON = 8; // insertion sort shifts allowed per polygon before switching to radix
+
+	private int frame = 0; // stamp of the frame being collected
+	private int count = 0; // polygons in the current order
+	private Poly[] order = new Poly[0];
+	private float[] keys = new float[0]; // negated distance of each ordered polygon
+
+	// polygons offered this frame, in the order they were offered
+	private int offered = 0;
+	private Poly[] incoming = new Poly[0];
+
+	// radix sort scratch
+	private Poly[] spareOrder = new Poly[0];
+	private int[] bits = new int[0], spareBits = new int[0];
+	private final int[] buckets = new int[257];
+
+	// read-only view of the current order, valid until the next sort
+	private final List<Poly> view = new AbstractList<Poly>() {
+		@Override
+		public Poly get(int i) {
+			return order[i];
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+	};
+
+	public void begin() {
+		// start collecting a new frame
+		frame++;
+		offered = 0;
+	}
+
+	public void add(Poly p) {
+		// a polygon to draw this frame, already updated for the camera
+		if (offered == incoming.length) {
+			incoming = grow(incoming, offered + 1);
+		}
+		incoming[offered++] = p;
+		p.depthFrame = frame;
+	}
+
+	public List<Poly> sort() {
+		// this frame's polygons in painter's order
+		merge();
+		for (int i=0; i<count; i++) {
+			keys[i] = key(order[i].getDistance());
+		}
+		if (!insertionSort()) {
+			radixSort();
+		}
+		return view;
+	}
+
+	public List<Poly> getOrder() {
+		return view;
+	}
+
+
+	/* ===================== */
+	/* ===== COHERENCE ===== */
+	/* ===================== */
+
+	private void merge() {
+		// last frame's polygons that are still drawn keep their places, new ones go at the end
+		if (order.length < offered) {
+			int capacity = Math.max(offered, order.length * 2);
+			order = Arrays.copyOf(order, capacity);
+			keys = new float[capacity];
+		}
+		int kept = 0;
+		for (int i=0; i<count; i++) {
+			Poly p = order[i];
+			if (p.depthFrame == frame) {
+				order[kept++] = p;
+				p.depthFrame = -frame; // placed
+			}
+		}
+		for (int i=0; i<offered; i++) {
+			Poly p = incoming[i];
+			if (p.depthFrame == frame) {
+				order[kept++] = p;
+				p.depthFrame = -frame;
+			}
+		}
+		// drop references to polygons no longer drawn
+		for (int i=kept; i<count; i++) {
+			order[i] = null;
+		}
+		for (int i=0; i<offered; i++) {
+			incoming[i] = null;
+		}
+		count = kept;
+	}
+
+	private static float key(double distance) {
+		// ascending keys give farthest first, NaN sorts before everything
+		if (Double.isNaN(distance)) {return Float.NEGATIVE_INFINITY;}
+		return (float) -distance;
+	}
+
+	private boolean insertionSort() {
+		// stable, returns false once the shift budget runs out, leaving a permutation of the order
+		long budget = (long) MOVES_PER_POLYGON * count;
+		for (int i=1; i<count; i++) {
+			float k = keys[i];
+			if (keys[i - 1] <= k) {continue;}
+			Poly p = order[i];
+			int j = i - 1;
+			while (j >= 0 && keys[j] > k) {
+				keys[j + 1] = keys[j];
+				order[j + 1] = order[j];
+				j--;
+			}
+			keys[j + 1] = k;
+			order[j + 1] = p;
+			budget -= i - 1 - j;
+			if (budget < 0) {return false;}
+		}
+		return true;
+	}
+
+
+	/* ====================== */
+	/* ===== RADIX SORT ===== */
+	/* ====================== */
+
+	private void radixSort() {
+		// stable least significant digit sort, a byte at a time, on the key bits made unsigned-ordered
+		if (bits.length < count) {
+			int capacity = Math.max(count, bits.length * 2);
+			bits = new int[capacity];
+			spareBits = new int[capacity];
+			spareOrder = new Poly[capacity];
+		}
+		for (int i=0; i<count; i++) {
+			int b = Float.floatToRawIntBits(keys[i]);
+			bits[i] = b ^ ((b >> 31) | 0x80000000); // negatives reversed and below positives
+		}
+
+		int[] fromBits = bits, toBits = spareBits;
+		Poly[] from = order, to = spareOrder;
+		for (int shift=0; shift<32; shift+=8) {
+			Arrays.fill(buckets, 0);
+			for (int i=0; i<count; i++) {
+				buckets[((fromBits[i] >>> shift) & 0xff) + 1]++;
+			}
+			for (int d=0; d<256; d++) {
+				buckets[d + 1] += buckets[d];
+			}
+			for (int i=0; i<count; i++) {
+				int slot = buckets[(fromBits[i] >>> shift) & 0xff]++;
+				toBits[slot] = fromBits[i];
+				to[slot] = from[i];
+			}
+			int[] swapBits = fromBits; fromBits = toBits; toBits = swapBits;
+			Poly[] swap = from; from = to; to = swap;
+		}
+		// four passes land back in order and bits, keys are left stale until the next frame
+		Arrays.fill(spareOrder, 0, count, null);
+	}
+
+	private static Poly[] grow(Poly[] array, int needed) {
+		return Arrays.copyOf(array, Math.max(needed, array.length * 2));
+	}
+
+}
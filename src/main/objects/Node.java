@@ -6,7 +6,6 @@ import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
 
 public class Node {
 	
@@ -21,6 +20,9 @@ public class Node {
 	private Point3D lwh; // length, width, height of object
 	private boolean renderable = true; // will be drawn if true
 	private List<Poly> polygons = new ArrayList<Poly>(); // associated polygons
+	private boolean pendingCube = false; // cube polygons are built on first use
+	private boolean selected = false;
+	private Poly sprite; // single polygon drawn in place of the cube when far away, made on first use
 	
 	public Node(int l, int w, int h, int id) {
 		this(new Point3D(0-l/2, 0-w/2, 0-h/2), id, 0);
@@ -29,7 +31,7 @@ public class Node {
 	}
 	
 	public Node(Point3D xyz, int id, double size) {
-		this(xyz, id, 0, ThreadLocalRandom.current().nextInt(6000, 60000), size);
+		this(xyz, id, 0, 0, size);
 	}
 	
 	public Node(Point3D xyz, int id, int kelvin, int radius, double size) {
@@ -64,6 +66,11 @@ public class Node {
 				new double[]{z, z, z+h, z+h}, id));
 	}
 
+	public void asLazyCube() {
+		// same shape as asCube, but only built once something asks for the polygons
+		pendingCube = true;
+	}
+
 	public void asPlane(int l, int w, int h) {		
 		
 		int dim1Size = l == 0 ? w : l;
@@ -92,6 +99,7 @@ public class Node {
 	public void setColor(Color color) {
 		// change color of this shape and all of its polygons
 		polygons.stream().forEach(p -> p.setColor(color));
+		if (sprite != null) {sprite.setColor(color);}
 		this.color = color;
 	}
 	
@@ -104,26 +112,54 @@ public class Node {
 	}
 	
 	public List<Poly> getPolygons() {
+		if (pendingCube) {
+			// build at the current position and catch up on color and selection
+			pendingCube = false;
+			asCube();
+			polygons.stream().forEach(p -> {p.setColor(color); p.toggleSelect(selected);});
+		}
 		return polygons;
 	}
 	
+	public Poly getSprite(int kind, double pixels) {
+		// one quad or point at the center of the cube, see Poly.place
+		if (sprite == null) {
+			sprite = new Poly(id);
+			sprite.setColor(color);
+			sprite.toggleSelect(selected);
+		}
+		double half = lwh.getX() / 2;
+		sprite.place(kind, xyz.getX() - half, xyz.getY() - half, xyz.getZ() - half, pixels);
+		return sprite;
+	}
+	
+	public double getSize() {
+		// edge length of the cube
+		return lwh.getX();
+	}
+	
 	public void select() {
 		// select all polygons
+		selected = true;
 		polygons.stream().forEach(p -> p.toggleSelect(true));
+		if (sprite != null) {sprite.toggleSelect(true);}
 	}
 	
 	public void deselect() {
 		// deselect all polygons
+		selected = false;
 		polygons.stream().forEach(p -> p.toggleSelect(false));
+		if (sprite != null) {sprite.toggleSelect(false);}
 	}
 	
 	public void drawSelectionVisuals(GraphicsContext g, Vector v) {
-		Point2D xy = v.toScreenSpace(this.xyz);
+		Point3D xyz = getXYZ();
+		Point2D xy = v.toScreenSpace(xyz);
 		g.setLineWidth(1);
 		g.setStroke(Color.ORANGE);
 		g.strokeLine(xy.getX(), xy.getY(), xy.getX()+10, xy.getY()-10);
 		g.strokeText(toString(), xy.getX()+12, xy.getY()-11);
-		String positionText = String.format("%.2f:%.2f:%.2f", this.xyz.getX(), this.xyz.getY(), this.xyz.getZ());
+		String positionText = String.format("%.2f:%.2f:%.2f", xyz.getX(), xyz.getY(), xyz.getZ());
 		g.strokeText(positionText, xy.getX()+12, xy.getY());
 	}
 
@@ -131,6 +167,18 @@ public class Node {
 		return xyz;
 	}
 	
+	public void moveTo(double x, double y, double z) {
+		// move the shape and all of its polygons so that it sits at (x,y,z)
+		double dx = x - xyz.getX();
+		double dy = y - xyz.getY();
+		double dz = z - xyz.getZ();
+		if (dx == 0 && dy == 0 && dz == 0) {return;}
+		for (Poly p : polygons) {
+			p.moveOnXYZ(dx, dy, dz);
+		}
+		xyz = new Point3D(x, y, z);
+	}
+	
 	public void setXYZ(Point3D xyz) {
 		this.xyz = xyz;
 	}
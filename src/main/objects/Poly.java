@@ -2,8 +2,6 @@ package main.objects;
 
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Polygon;
-import java.util.stream.IntStream;
-import javafx.geometry.Point2D;
 import javafx.geometry.Point3D;
 import javafx.scene.canvas.GraphicsContext;
 
@@ -15,20 +13,29 @@ public class Poly extends Polygon {
 	 * and distance from the focus of the application's camera vector.
 	 * Polygons are associated with a node with shape data, unless
 	 * drawn freely.
+	 *
+	 * A Poly can also stand in for a whole distant body as a sprite: a
+	 * screen-aligned square of a given pixel size around one 3D point, or
+	 * a single pixel, chosen by Galaxy's level of detail.
 	 */
 	
+	public static final int FACE = 0; // four 3D vertices, projected one by one
+	public static final int QUAD = 1; // square sprite centered on one projected point
+	public static final int POINT = 2; // one pixel sprite at one projected point
+	
 	private Color c; // color of the drawable graphic's body
 	private double[] x, y, z; // default coordinates for each vertex
 	private double distance = 0.0; // render distance from camera's focus
 	private boolean selected = false; // is the parent object selected?
 	private int shapeNumber; // identifier for parent object
+	private int kind = FACE;
+	private double pixels = 0; // side of a sprite on screen
+	int depthFrame = 0; // frame DepthOrder last saw this polygon in, negated once placed
 	
-	// x points and y points for 2D screen placement
-	// even though the Polygon class stores the same values, having independent
-	// sets for 2D point (x, y) is more convenient to render and work with.
-	// However, its easier to check for mouseclicks on Polygons with the Polygon class
-	// Dumb but easy
-	private double[] xp, yp; 
+	// x points and y points for 2D screen placement, reused every update
+	// mouseclicks are checked against these with containsScreenPoint rather
+	// than through the Polygon class's point list, which boxes every coordinate
+	private double[] xp = new double[4], yp = new double[4]; 
 	
 	@Override
 	public String toString() {
@@ -50,36 +57,73 @@ public class Poly extends Polygon {
 		this.shapeNumber = i;
 	}
 	
+	public Poly(int i) {
+		// a sprite, placed before every update
+		this(new double[1], new double[1], new double[1], i);
+		this.kind = QUAD;
+	}
+	
+	public void place(int kind, double x, double y, double z, double pixels) {
+		// move a sprite to a point and set how it is drawn
+		this.kind = kind;
+		this.x[0] = x;
+		this.y[0] = y;
+		this.z[0] = z;
+		this.pixels = pixels;
+	}
+	
 	public double getDistanceFromPoint(Point3D point) {
 		// returns average distance between this polygons vertices and a point
-		double distance = IntStream.range(0, x.length)
-							   	   .mapToDouble(i -> point.distance(new Point3D(x[i], y[i], z[i])))
-							       .average()
-							       .getAsDouble();
-		return distance;
+		double distance = 0;
+		for (int i=0; i<x.length; i++) {
+			double a = point.getX() - x[i], b = point.getY() - y[i], c = point.getZ() - z[i];
+			distance += Math.sqrt(a * a + b * b + c * c);
+		}
+		return distance / x.length;
 	}
 
 	
 	public void update(Vector camera) {
-		this.getPoints().clear();
-		
-		xp = new double[4];
-		yp = new double[4];
-		
-		for (int i=0; i<4; i++) {
-			Point2D point2D = camera.toScreenSpace(new Point3D(x[i], y[i], z[i]));
-			// add new point to the Polygon's and Poly's point sets
-			getPoints().addAll(point2D.getX(), point2D.getY());
-			xp[i] = point2D.getX();
-			yp[i] = point2D.getY();
+		if (kind == FACE) {
+			camera.project(x, y, z, 4, xp, yp);
+		} else {
+			// corners of the sprite's square around its projected center, one pixel for a point
+			camera.project(x, y, z, 1, xp, yp);
+			double half = kind == POINT ? 0.5 : pixels / 2;
+			double cx = xp[0], cy = yp[0];
+			xp[0] = cx - half; yp[0] = cy - half;
+			xp[1] = cx + half; yp[1] = cy - half;
+			xp[2] = cx + half; yp[2] = cy + half;
+			xp[3] = cx - half; yp[3] = cy + half;
 		}
-
 		this.distance = getDistanceFromPoint(camera.getOrigin());
 	}
 	
+	public boolean containsScreenPoint(double px, double py) {
+		// non-zero winding test against the projected corners, the Polygon class's default fill rule
+		int winding = 0;
+		for (int i=0, j=3; i<4; j=i++) {
+			if (yp[j] <= py) {
+				if (yp[i] > py && cross(xp[j], yp[j], xp[i], yp[i], px, py) > 0) {winding++;}
+			} else if (yp[i] <= py && cross(xp[j], yp[j], xp[i], yp[i], px, py) < 0) {
+				winding--;
+			}
+		}
+		return winding != 0;
+	}
+	
+	private static double cross(double x0, double y0, double x1, double y1, double px, double py) {
+		// positive if p is left of the edge from 0 to 1
+		return (x1 - x0) * (py - y0) - (px - x0) * (y1 - y0);
+	}
+	
 	public void draw(GraphicsContext g) {
 		
 		g.setFill(c);
+		if (kind == POINT) {
+			g.fillRect(xp[0], yp[0], 1, 1);
+			return;
+		}
 		g.fillPolygon(xp, yp, 4);
 		g.fill();
         g.stroke();
@@ -100,10 +144,14 @@ public class Poly extends Polygon {
 	}
 	
 	public void moveOnXYZ(Point3D increments) {
+		moveOnXYZ(increments.getX(), increments.getY(), increments.getZ());
+	}
+	
+	public void moveOnXYZ(double dx, double dy, double dz) {
 		for (int i=0; i<x.length; i++) {
-			this.x[i] += increments.getX();
-			this.y[i] += increments.getY();
-			this.z[i] += increments.getZ();
+			this.x[i] += dx;
+			this.y[i] += dy;
+			this.z[i] += dz;
 		}
 	}
 
@@ -25,6 +25,16 @@ public class Vector {
 	private double animationModifier = 0.0; // used by animation sequence to offset renders
 	private double oldDistance; // used by sequences for vector-to-vector comparisons (e.g. doppler shift)
 	
+	// camera basis for projecting points, rebuilt once per frame rather than once per point
+	private boolean basisStale = true; // origin or foci moved since the basis was built
+	private double ux, uy, uz; // unit view direction, origin to foci
+	private double xAxisX, xAxisY, xAxisZ; // screen x axis
+	private double yAxisX, yAxisY, yAxisZ; // screen y axis
+	private double ox, oy, oz; // origin
+	private double plane; // distance along the view direction from origin to the focal plane
+	private double screenX, screenY; // screen position of the focal point
+	private final double[] made = new double[2]; // last make2D result
+	
 	public static Vector defaultCamera() {
 		return new Vector(new Point3D(0, 0, 0), new Point3D(20, 20, 30));
 	}
@@ -110,6 +120,7 @@ public class Vector {
 	}
 	
 	private void update() {
+		basisStale = true;
 		this.xyz = foci.subtract(origin);
 		this.distance = foci.distance(origin);
 		if (distance>0) {
@@ -121,45 +132,91 @@ public class Vector {
 		// calibrate center of 3d view to center of GUI
 		// confirmed to be the correct procedure
 		// WARNING this offset is artifact of physics render control panel
-		Point2D sceneGeo = new Point2D(scene.getWidth()/2-110, scene.getHeight()/2);
-		Point2D point2D = make2D(foci);
-		this.xy = point2D.add(sceneGeo);
-		triangulateVector();
+		calibrate(scene.getWidth()/2-110, scene.getHeight()/2);
 	}
 	
 	public void setPerspective2D(double width, double height) {
 		// calibrate center of 3d view to center of GUI
 		// confirmed to be the correct procedure
-		Point2D sceneGeo = new Point2D(width/2, height/2);
-		Point2D point2D = make2D(foci);
-		this.xy = point2D.add(sceneGeo);
+		calibrate(width/2, height/2);
+	}
+	
+	private void calibrate(double centerX, double centerY) {
+		buildBasis();
+		make2D(foci.getX(), foci.getY(), foci.getZ());
+		this.screenX = made[0] + centerX;
+		this.screenY = made[1] + centerY;
+		this.xy = new Point2D(screenX, screenY);
 		triangulateVector();
 	}
 	
 	public Point2D toScreenSpace(Point3D xyz) {
 		// transform 3d point to 2d, then calibrate to position on GUI
-		Point2D point2D = make2D(xyz);
-		return point2D.multiply(50).add(xy);
+		double[] screen = new double[2];
+		toScreenSpace(xyz.getX(), xyz.getY(), xyz.getZ(), screen);
+		return new Point2D(screen[0], screen[1]);
+	}
+	
+	public void toScreenSpace(double x, double y, double z, double[] screen) {
+		// as above, written into screen[0] and screen[1] instead of a new point
+		if (basisStale) {buildBasis();}
+		make2D(x, y, z);
+		screen[0] = made[0] * 50 + screenX;
+		screen[1] = made[1] * 50 + screenY;
+	}
+	
+	public void project(double[] x, double[] y, double[] z, int count, double[] screenXs, double[] screenYs) {
+		// screen positions of the first count points, the same ones toScreenSpace gives
+		if (basisStale) {buildBasis();}
+		for (int i=0; i<count; i++) {
+			make2D(x[i], y[i], z[i]);
+			screenXs[i] = made[0] * 50 + screenX;
+			screenYs[i] = made[1] * 50 + screenY;
+		}
+	}
+
+	public double getPixelsPerUnit(double x, double y, double z) {
+		// screen pixels covered by one unit of length at a point facing the camera,
+		// infinite at or behind the camera where projection breaks down
+		if (basisStale) {buildBasis();}
+		double depth = ux * (x - ox) + uy * (y - oy) + uz * (z - oz);
+		return depth > 0 ? 50 * plane / depth : Double.POSITIVE_INFINITY;
 	}
 
-	private Point2D make2D(Point3D point3D) {		
+	private void make2D(double x, double y, double z) {
+		// the per-point part of projecting, into made, with arithmetic in the
+		// same order as the Point3D operations it replaces so results are identical
+		double vx = x - ox, vy = y - oy, vz = z - oz;
+		double length = Math.sqrt(vx * vx + vy * vy + vz * vz);
+		if (length == 0) {
+			vx = 0; vy = 0; vz = 0;
+		} else {
+			vx = vx / length; vy = vy / length; vz = vz / length;
+		}
+		double perspective = plane / (ux * vx + uy * vy + uz * vz);
+
+		double x2D = 0.0, y2D = 0.0;
+		if (perspective > 0) {
+			double px = ox + vx * perspective, py = oy + vy * perspective, pz = oz + vz * perspective;
+			x2D = xAxisX * px + xAxisY * py + xAxisZ * pz;
+			y2D = yAxisX * px + yAxisY * py + yAxisZ * pz;
+		}
+		made[0] = x2D;
+		made[1] = y2D;
+	}
+	
+	private void buildBasis() {
+		// the per-frame part of projecting: view direction, screen axes and focal plane
 		Point3D unitVector = foci.subtract(origin).normalize();
 		Point3D rotationVector = this.rotate();
 		Point3D yVector = unitVector.crossProduct(rotationVector);
 		Point3D xVector = unitVector.crossProduct(yVector);
-		Point3D vectorToPoint = point3D.subtract(origin).normalize();
-		
-		double perspective = (unitVector.dotProduct(foci) -  unitVector.dotProduct(origin))
-				/  unitVector.dotProduct(vectorToPoint);
-
-		Point3D newXYZ = origin.add(vectorToPoint.multiply(perspective));
-		
-		double x2D = 0.0, y2D = 0.0;
-		if(perspective > 0) {
-			x2D = xVector.dotProduct(newXYZ);
-			y2D = yVector.dotProduct(newXYZ);
-		}
-		return new Point2D(x2D, y2D);
+		ux = unitVector.getX(); uy = unitVector.getY(); uz = unitVector.getZ();
+		xAxisX = xVector.getX(); xAxisY = xVector.getY(); xAxisZ = xVector.getZ();
+		yAxisX = yVector.getX(); yAxisY = yVector.getY(); yAxisZ = yVector.getZ();
+		ox = origin.getX(); oy = origin.getY(); oz = origin.getZ();
+		plane = unitVector.dotProduct(foci) - unitVector.dotProduct(origin);
+		basisStale = false;
 	}
 	
 	private Point3D rotate() {
@@ -188,6 +245,7 @@ public class Vector {
 		Point3D temp = this.xyz.multiply(magnitude);
 		this.origin = this.origin.add(temp);
 		this.foci = this.foci.add(temp);
+		basisStale = true;
 	}
 	
 	public void pan(double magnitude) {
@@ -195,6 +253,7 @@ public class Vector {
 		Point3D sideViewVector = xyz.crossProduct(verticalVector);
 		Point3D temp = sideViewVector.multiply(magnitude);
 		this.origin = this.origin.add(temp);
+		basisStale = true;
 	}
 	
 	public void moveForwardWithFocus() {
@@ -208,11 +267,13 @@ public class Vector {
 		// may have to invert some signs if copying this method to move backward
 		int h = b/c > 0 ? -1 : 1;
 		this.origin = new Point3D(origin.getX()-Math.cos(theta),origin.getY()+Math.sin(theta)*h,origin.getZ());
+		basisStale = true;
 	}
 
 	public void moveOnAxis(Point3D increment) {
 		// move origin along (x, y, z) axis while focusing on some point
 		this.origin = this.origin.add(increment);
+		basisStale = true;
 	}
 	
 	public Point3D getOrigin() {
@@ -0,0 +1,103 @@
+package main.simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import main.laws.Diagnostics;
+import main.laws.PhaseTimers;
+import main.laws.Simulation;
+import main.laws.TrajectoryRecorder;
+
+public class BatchRunner {
+
+	/**Headless entry point for machines without a display. Builds a
+	 * Simulation from a body count and random seed, advances it a fixed
+	 * number of steps as fast as possible and reports the throughput. Only
+	 * main.laws is touched, so javafx does not need to be on the classpath.
+	 *
+	 * usage: BatchRunner bodies steps [seed] [gravity] [integrator] [threads] [trajectory] [cadence] [potential]
+	 * gravity is one of brute, barnes, parallel, symmetric, simd, mesh, fmm
+	 * integrator is one of euler, leapfrog, verlet, block
+	 * trajectory is a file to record every body into, every cadence steps (default 10).
+	 * the run waits for the disk rather than lose frames, "-" records nothing.
+	 * potential turns on conservation diagnostics every step with the potential energy
+	 * summed every potential steps, and their drift is reported at the end.
+	 * run with -Dgalaxy.timing=true to also print how long each phase of a step took
+	 */
+
+	public static void main(String[] args) throws IOException {
+		int bodies = args.length > 0 ? Integer.parseInt(args[0]) : 650;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+		String gravity = args.length > 3 ? args[3] : "brute";
+		String integrator = args.length > 4 ? args[4] : "euler";
+
+		// the central star is always added, so ask for one planet fewer
+		Simulation simulation = new Simulation(Math.max(bodies - 1, 0), seed);
+		if (args.length > 5) {
+			simulation.setParallelism(Integer.parseInt(args[5]));
+		}
+		simulation.useGravityEngine(gravityIndex(gravity));
+		simulation.useIntegrator(integratorIndex(integrator));
+		if (args.length > 6 && !args[6].equals("-")) {
+			int cadence = args.length > 7 ? Integer.parseInt(args[7]) : 10;
+			simulation.setRecorder(new TrajectoryRecorder(Path.of(args[6]), simulation.size(), cadence, TrajectoryRecorder.BLOCK));
+		}
+
+		System.out.printf("BatchRunner %d bodies, %d steps, %s, %s, %d threads%n", simulation.size(), steps,
+				simulation.getGravityEngine().getName(), simulation.getIntegrator().getName(), simulation.getParallelism());
+
+		if (args.length > 8) {
+			simulation.setDiagnostics(new Diagnostics(1, Integer.parseInt(args[8])));
+		}
+
+		long start = System.nanoTime();
+		for (int i=0; i<steps; i++) {
+			simulation.step(false);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%.3f s, %.1f steps/sec, %.3e body-updates/sec%n", seconds,
+				steps / seconds, (double) steps * simulation.size() / seconds);
+		TrajectoryRecorder recorder = simulation.getRecorder();
+		if (recorder != null) {
+			recorder.close();
+			System.out.printf("recorded %d frames to %s%n", recorder.getWritten(), args[6]);
+		}
+		Diagnostics diagnostics = simulation.getDiagnostics();
+		if (diagnostics != null) {
+			System.out.printf("drift over %d samples: energy %.3e, momentum %.3e, angular momentum %.3e%n",
+					diagnostics.getSamples(), diagnostics.getEnergyDrift(), diagnostics.getMomentumDrift(),
+					diagnostics.getAngularMomentumDrift());
+		}
+		if (PhaseTimers.active()) {
+			for (String line : PhaseTimers.summary()) {
+				System.out.println(line);
+			}
+		}
+		simulation.getPool().shutdown();
+	}
+
+	private static int gravityIndex(String name) {
+		switch (name) {
+			case "barnes": return 1;
+			case "parallel": return 2;
+			case "symmetric": return 3;
+			case "simd": return 4;
+			case "mesh": return 5;
+			case "fmm": return 6;
+			case "brute": return 0;
+			default: throw new IllegalArgumentException("unknown gravity engine " + name);
+		}
+	}
+
+	private static int integratorIndex(String name) {
+		switch (name) {
+			case "leapfrog": return 1;
+			case "verlet": return 2;
+			case "block": return 3;
+			case "euler": return 0;
+			default: throw new IllegalArgumentException("unknown integrator " + name);
+		}
+	}
+
+}
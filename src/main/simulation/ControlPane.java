@@ -1,5 +1,8 @@
 package main.simulation;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.geometry.Insets;
@@ -29,6 +32,10 @@ public class ControlPane extends HBox {
 	 * and application. 
 	 */
 	
+	private static final Path CHECKPOINT = Path.of("galaxy.ckpt"); // save and load target, in the working directory
+	private static final Path TRAJECTORY = Path.of("galaxy.traj"); // recording target, in the working directory
+	private static final int RECORD_CADENCE = 4; // steps between recorded frames
+
 	private VBox controls;
 	private Canvas gradientBar;
 	
@@ -48,6 +55,9 @@ public class ControlPane extends HBox {
 	private Label vInclination;
 	private Label vOrigin;
 	private Label vFoci;
+	
+	private Label sSavedEvaluations;
+	private Label sForcePasses;
 
 	public ControlPane(Scene scene, PhysicsApp render) {
 		this.setHeight(scene.getHeight());
@@ -92,8 +102,8 @@ public class ControlPane extends HBox {
         		case A: render.getCamera().pan(1.0); break;
         		case S: render.getCamera().dolly(-1.0); break;
         		case D: render.getCamera().pan(-1.0); break;
-        		case E: render.getGalaxy().scaleVelocity(1.5); break;
-        		case Q: render.getGalaxy().scaleVelocity(.67); break;
+        		case E: render.submit(g -> g.scaleVelocity(1.5)); break;
+        		case Q: render.submit(g -> g.scaleVelocity(.67)); break;
         		case R: render.getCamera().moveForwardWithFocus(); break;
         		case ESCAPE: System.exit(0);
         		default: break;
@@ -230,8 +240,11 @@ public class ControlPane extends HBox {
 				double adjust = ((double) newVal / 6) + 1;
 				// increasing scales should scale by an exponential factor
 				adjust = adjust >= 1 ? Math.pow(adjust, 5) : adjust;
-				double newG = Physics.scaleG(adjust);
-				gravityUnits.setText(String.format("%6.1e mkg/s", newG));
+				final double scale = adjust;
+				render.submit(g -> {
+					double newG = g.scaleGravity(scale);
+					Platform.runLater(() -> gravityUnits.setText(String.format("%6.1e mkg/s", newG)));
+				});
 			}
 		});
 		addMultiControl(gravityLabel, gravityUnits);
@@ -252,14 +265,14 @@ public class ControlPane extends HBox {
 				// normalize then make scalar as 0 <= adjust <= 2
 				double adjust = ( newVal.doubleValue() / 6) + 1;
 				// increasing scales should scale by an exponential factor
-				render.getGalaxy().scaleEnergy(adjust);
+				render.submit(g -> g.scaleEnergy(adjust));
 				energyUnits.setText(String.format("x%.2f", adjust));
 			}
 		});
 		addControls(energySlider);
 		
 		Button ignite = new Button("Ignite Object");
-		ignite.setOnAction(e -> {render.getGalaxy().makeStar();});
+		ignite.setOnAction(e -> {render.submit(Galaxy::makeStar);});
 		addControls(ignite);
 		
 		
@@ -279,7 +292,7 @@ public class ControlPane extends HBox {
 		        if (!isChanging) {
 		        	double value = spaceSlider.getValue();
 		        	double scale = 1 + (value / 10);
-					render.getGalaxy().scaleSpace(scale);
+					render.submit(g -> g.scaleSpace(scale));
 
 		        	spaceSlider.setValue(0);
 		        	spaceUnits.setText("-");
@@ -299,11 +312,106 @@ public class ControlPane extends HBox {
 		});
 		addControls(spaceSlider);
 
+		Button solver = new Button("Gravity: " + render.getGalaxy().getGravityEngine().getName());
+		solver.setOnAction(e -> {
+			render.submit(g -> {
+				String name = g.cycleGravityEngine().getName();
+				Platform.runLater(() -> solver.setText("Gravity: " + name));
+			});
+		});
+		Button stepper = new Button("Integrator: " + render.getGalaxy().getIntegrator().getName());
+		stepper.setOnAction(e -> {
+			render.submit(g -> {
+				String name = g.cycleIntegrator().getName();
+				Platform.runLater(() -> stepper.setText("Integrator: " + name));
+			});
+		});
+		addControls(solver, stepper);
+		
+		Label savedLabel = makeLabel("Force evals saved");
+		sSavedEvaluations = makeUnitLabel("-");
+		addMultiControl(savedLabel, sSavedEvaluations);
+		Label passesLabel = makeLabel("Force passes");
+		sForcePasses = makeUnitLabel("-");
+		addMultiControl(passesLabel, sForcePasses);
+
 		Button halt = new Button("Halt Physics");
 		Button pause = new Button("Pause Physics");
-		halt.setOnAction(e -> {render.getGalaxy().scaleVelocity(0);});
+		halt.setOnAction(e -> {render.submit(g -> g.scaleVelocity(0));});
 		pause.setOnAction(e -> {render.pausePhysics();});
 		addControls(halt, pause);
+
+		Button record = new Button("Start Recording");
+		record.setOnAction(e -> {
+			render.submit(g -> {
+				try {
+					boolean recording = g.toggleRecording(TRAJECTORY, RECORD_CADENCE);
+					Platform.runLater(() -> record.setText(recording ? "Stop Recording" : "Start Recording"));
+				} catch (IOException ex) {
+					System.out.println("Recording failed: " + ex.getMessage());
+				}
+			});
+		});
+		addControls(record);
+
+
+
+		Label replayLabel = makeSectionLabel("Replay");
+		Label replayUnits = makeUnitLabel("x1.00");
+		addMultiControl(replayLabel, replayUnits);
+
+		Button replay = new Button("Replay Recording");
+		replay.setOnAction(e -> {
+			render.submit(g -> {
+				try {
+					if (g.isReplaying()) {
+						g.stopReplay();
+					} else {
+						g.startReplay(TRAJECTORY);
+					}
+					boolean replaying = g.isReplaying();
+					Platform.runLater(() -> replay.setText(replaying ? "Stop Replay" : "Replay Recording"));
+				} catch (IOException ex) {
+					System.out.println("Replay failed: " + ex.getMessage());
+				}
+			});
+		});
+		Button reverse = new Button("Reverse");
+		reverse.setOnAction(e -> {
+			render.submit(g -> {
+				if (g.isReplaying()) {g.getReplay().reverse();}
+			});
+		});
+		addControls(replay, reverse);
+
+		// play rate doubles every two ticks, from 1/8 to 8 times normal speed
+		Slider rateSlider = makeSlider();
+		rateSlider.valueProperty().addListener(new ChangeListener<Number>() {
+			@Override
+			public void changed(ObservableValue<? extends Number> ov, Number oldVal, Number newVal) {
+				double rate = Math.pow(2, newVal.doubleValue() / 2);
+				render.submit(g -> {
+					if (g.isReplaying()) {
+						// keep the current direction
+						g.getReplay().setRate(Math.copySign(rate, g.getReplay().getRate()));
+					}
+				});
+				replayUnits.setText(String.format("x%.2f", rate));
+			}
+		});
+		addControls(rateSlider);
+
+		Slider seekSlider = new Slider(0, 1, 0);
+		seekSlider.valueProperty().addListener(new ChangeListener<Number>() {
+			@Override
+			public void changed(ObservableValue<? extends Number> ov, Number oldVal, Number newVal) {
+				double fraction = newVal.doubleValue();
+				render.submit(g -> {
+					if (g.isReplaying()) {g.getReplay().seek(fraction);}
+				});
+			}
+		});
+		addControls(seekSlider);
 		
 		
 		
@@ -389,9 +497,32 @@ public class ControlPane extends HBox {
 
 		Button reseed = new Button("Reset Seed");
 		reseed.setOnAction(e -> {
-			render.getGalaxy().reset();
+			render.submit(Galaxy::reset);
 		});
 		addControls(deselect, reseed);
+
+		Button save = new Button("Save Checkpoint");
+		save.setOnAction(e -> {
+			render.submit(g -> {
+				try {
+					g.save(CHECKPOINT);
+				} catch (IOException ex) {
+					System.out.println("Save failed: " + ex.getMessage());
+				}
+			});
+		});
+
+		Button load = new Button("Load Checkpoint");
+		load.setOnAction(e -> {
+			render.submit(g -> {
+				try {
+					g.restore(CHECKPOINT);
+				} catch (IOException ex) {
+					System.out.println("Load failed: " + ex.getMessage());
+				}
+			});
+		});
+		addControls(save, load);
 		
 		
 		
@@ -476,9 +607,22 @@ public class ControlPane extends HBox {
 	}
 	
 	public void refreshInfo(Vector camera, Galaxy galaxy ) {
-		updateCompass(camera, galaxy.getActive());
+		updateCompass(camera, galaxy.getShownActive());
 		updateVectorLabels(camera);
-		updateActiveObjectLabels(galaxy.getActive());
+		updateActiveObjectLabels(galaxy.getFrame());
+		updateSolverLabels(galaxy.getFrame());
+	}
+	
+	private void updateSolverLabels(Snapshot frame) {
+		// force evaluations avoided by block timesteps in the last macro step, and the
+		// engine calls they took, which is what a tree or mesh engine pays for
+		if (frame.isBlockSteps()) {
+			sSavedEvaluations.setText(String.format("%d (rung %d)", frame.getSavedEvaluations(), frame.getDeepestRung()));
+			sForcePasses.setText(String.format("%d in %d sub-steps", frame.getPasses(), frame.getSubSteps()));
+		} else {
+			sSavedEvaluations.setText("-");
+			sForcePasses.setText("-");
+		}
 	}
 	
 	private void updateCompass(Vector v, PhysicsNode p) {
@@ -540,18 +684,17 @@ public class ControlPane extends HBox {
 	}
 	
 	
-	private void updateActiveObjectLabels(PhysicsNode p) {
-
-		if (p != null) {
-			pIdNumber.setText(String.format("Object %-1s", p.getID()));
-			Point3D point3D = p.getXYZ();
-			pPosition.setText(String.format("%.1f, %.1f, %.1f", point3D.getX(), point3D.getY(), point3D.getZ()));
-			Point3D velocity = p.getXYZVelocity();
-			pVelocity.setText(String.format("%.1f, %.1f, %.1f", velocity.getX()*Physics.scaleAU/1000000, velocity.getY()*Physics.scaleAU/1000000, velocity.getZ()*Physics.scaleAU/1000000));
-			Point3D acceleration = p.getXYZAcceleration();
-			pAcceleration.setText(String.format("%.1f, %.1f, %.1f", acceleration.getX()*Physics.scaleAU/1000000, acceleration.getY()*Physics.scaleAU/1000000, acceleration.getZ()*Physics.scaleAU/1000000));
-			pTemperature.setText(String.format("%d", p.getKelvin()));
-			pMass.setText(String.format("%e", p.getMass()/1000.0/1000.0));
+	private void updateActiveObjectLabels(Snapshot frame) {
+		// read from the frame on screen, the live store is being stepped and compacted meanwhile
+		int a = frame.getActive();
+		if (a >= 0) {
+			double scale = Physics.scaleAU/1000000;
+			pIdNumber.setText(String.format("Object %-1s", frame.getNode(a).getID()));
+			pPosition.setText(String.format("%.1f, %.1f, %.1f", frame.getX(a), frame.getY(a), frame.getZ(a)));
+			pVelocity.setText(String.format("%.1f, %.1f, %.1f", frame.getActiveVx()*scale, frame.getActiveVy()*scale, frame.getActiveVz()*scale));
+			pAcceleration.setText(String.format("%.1f, %.1f, %.1f", frame.getActiveAx()*scale, frame.getActiveAy()*scale, frame.getActiveAz()*scale));
+			pTemperature.setText(String.format("%d", frame.getKelvin(a)));
+			pMass.setText(String.format("%e", frame.getActiveMass()/1000.0/1000.0));
 		} else {
 			if (!pIdNumber.getText().equals("")) {
 				pIdNumber.setText("Object");
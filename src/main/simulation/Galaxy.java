@@ -1,37 +1,64 @@
 package main.simulation;
 
+import main.laws.BodyStore;
+import main.laws.Checkpoint;
+import main.laws.CollisionEngine;
+import main.laws.GravityEngine;
+import main.laws.NearestNeighbours;
+import main.laws.PhaseTimers;
+import main.laws.Integrator;
+import main.laws.Simulation;
+import main.laws.TrajectoryReader;
+import main.laws.TrajectoryRecorder;
+import main.gui.Gradient;
+import main.objects.DepthOrder;
 import main.objects.Poly;
-import main.objects.Node;
 import main.objects.PhysicsNode;
-import main.objects.Transit;
 import main.objects.Vector;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
-import javafx.geometry.Point2D;
-import javafx.geometry.Point3D;
 import javafx.scene.canvas.GraphicsContext;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class Galaxy extends ArrayList<PhysicsNode> {
 
 	/**The Galaxy class is responsible for maintaining + organizing all
-	 * objects contained within the simulation.
+	 * objects contained within the simulation. The physics itself runs in a
+	 * javafx-free Simulation; this list holds one drawable PhysicsNode per
+	 * body, in the same order as the Simulation's BodyStore.
 	 */
 	
 	private static final long serialVersionUID = 1L;
-	private int seed;
-	private int activeKey = -1;
-	private int galaxyRadius = 15;
+	private static final double TRANSIT_RANGE = 5.0; // farthest a transit reaches
+	public static final double CUBE_PIXELS = 4; // default size on screen from which a body is drawn as a cube
+	public static final double QUAD_PIXELS = 1; // default size on screen from which a body is drawn as a quad, a point below
+	private final Simulation simulation; // bodies, solvers and the rules that change them
+	private ReplaySource replay; // recorded bodies shown in place of the simulation's, null when live
+	private volatile int activeKey = -1;
 
-	// hashmap of nodes to a list of transits that originate from that node
-	private Map<Node, List<Transit>> transits = new HashMap<Node, List<Transit>>();
-	private List<PhysicsNode> energySources = new ArrayList<PhysicsNode>();
+	// transit graph in compressed rows: body i's edges are edgeStart[i] up to edgeStart[i+1]
+	private int transitCount = 0; // bodies the graph was built over
+	private int[] edgeStart = new int[1];
+	private int[] edgeTarget = new int[0];
+	private double[] edgeDistance = new double[0];
+	private double[] transitXs = new double[0], transitYs = new double[0]; // screen positions of the bodies
+	private NearestNeighbours neighbours = new NearestNeighbours(); // finds each body's transit partners
 	private Vector selectionTransit;	  
 	private boolean refreshTransits = true;
+	
+	// render side, touched only by the thread drawing frames
+	private Snapshot frame = new Snapshot(); // frame currently on screen
+	private long shownSequence = -1; // sequence of the frame whose positions were last applied
+	private PhysicsNode shownActive; // object whose polygons are drawn as selected
+	private DepthOrder depthOrder = new DepthOrder(); // polygons of the frame, farthest first
+	private double cubePixels = detailProperty("galaxy.cubePixels", CUBE_PIXELS);
+	private double quadPixels = detailProperty("galaxy.quadPixels", QUAD_PIXELS);
+	private final ForkJoinPool renderPool = ForkJoinPool.commonPool(); // never shut down, unlike the simulation's pool
     
 	
 	/* ========================================== */
@@ -39,39 +66,98 @@ public class Galaxy extends ArrayList<PhysicsNode> {
 	/* ========================================== */
 
 	public Galaxy(int seed) {
-		newSeed(seed);
-	}	
+		this(new Simulation(seed));
+	}
+	
+	public Galaxy(Simulation simulation) {
+		this.simulation = simulation;
+		makeNodes();
+	}
 
 	public void reset() {
+		if (blockedByReplay("Reset")) {return;}
 		resetActive();
-		clear();
-		newSeed(seed);
+		simulation.reset();
+		makeNodes();
+	}
+
+	public void save(Path path) throws IOException {
+		// always the live simulation, which a replay leaves as it was
+		Checkpoint.save(simulation, path);
+	}
+
+	public void restore(Path path) throws IOException {
+		if (blockedByReplay("Loading a checkpoint")) {return;}
+		resetActive();
+		Checkpoint.restore(simulation, path);
+		makeNodes();
 	}
 	
-	private Point3D makePosition() {
-		// place randomly within a cylindrical space 
-		double t = Math.toRadians(2 * Math.PI * ThreadLocalRandom.current().nextInt(0, 360));
-		double r = ThreadLocalRandom.current().nextInt(2, galaxyRadius);
-		double x = r * Math.cos(t);
-		double y = r * Math.sin(t);
-		double z = ThreadLocalRandom.current().nextDouble(-2.00, 2.01);
-		return new Point3D(x, y, z);
+	public boolean toggleRecording(Path path, int cadence) throws IOException {
+		// start recording every body to path, or finish the current recording.
+		// the GUI drops samples rather than stall when the disk falls behind
+		TrajectoryRecorder recorder = simulation.getRecorder();
+		if (recorder != null) {
+			simulation.setRecorder(null);
+			recorder.close();
+			return false;
+		}
+		if (blockedByReplay("Recording")) {return false;}
+		simulation.setRecorder(new TrajectoryRecorder(path, simulation.size(), cadence, TrajectoryRecorder.DROP));
+		return true;
 	}
 	
-	private void newSeed(int seed) {	
-		// create an initial energy source
-		PhysicsNode sun = new PhysicsNode(new Point3D(0, 0, 0), 0, "star", 8000, .1, 695700, 1.989e30);
-		energySources.add(sun);
-		add(sun);
-		
-		// procedurally create objects, providing a random position and an id number value
-		for (int i=0; i<seed; i++) {
-			PhysicsNode obj = new PhysicsNode(this.makePosition(), this.size());
-			add(obj);
+	public void startReplay(Path path) throws IOException {
+		// show a recording in place of the live simulation, which waits unchanged.
+		// the live simulation does not step meanwhile, so a recording would only gap
+		if (simulation.getRecorder() != null) {
+			System.out.println("Stop recording before replaying");
+			return;
 		}
-		
-		this.seed = size(); // since there is a minimum number of objects even if seed is zero
-		System.out.printf("Galaxy() %d object seed complete%n", seed);
+		TrajectoryReader reader = new TrajectoryReader(path);
+		stopReplay();
+		resetActive();
+		replay = new ReplaySource(reader);
+		replay.advance(true);
+		makeNodes();
+	}
+
+	public void stopReplay() throws IOException {
+		// go back to the live simulation where it was left
+		if (replay == null) {return;}
+		ReplaySource finished = replay;
+		replay = null;
+		resetActive();
+		makeNodes();
+		finished.close();
+	}
+
+	public boolean isReplaying() {
+		return replay != null;
+	}
+
+	public ReplaySource getReplay() {
+		return replay;
+	}
+	
+	private boolean blockedByReplay(String action) {
+		// changes to the live bodies wait until the replay is stopped
+		if (replay == null) {return false;}
+		System.out.println(action + " is not available during a replay");
+		return true;
+	}
+	
+	private void makeNodes() {
+		// one drawable view per body, with an id number value matching its store index
+		clear();
+		BodyStore bodies = getBodyStore();
+		for (int i=0; i<bodies.size(); i++) {
+			add(new PhysicsNode(bodies, i));
+		}
+	}
+	
+	public Simulation getSimulation() {
+		return simulation;
 	}
 	
 	/* =================================== */
@@ -80,32 +166,36 @@ public class Galaxy extends ArrayList<PhysicsNode> {
 
 	public void setActive(int index) {
 		// reset active key if same as new active key
+		// selection visuals follow when the next frame is shown
 		if (index == activeKey || index == -1) {
-			if (getActive() != null) {
-				getActive().deselect();
-			}
 			activeKey = -1; 
 		} else if (index < this.size() && index >= 0) {
-			if (hasActive()) {
-				getActive().deselect();
-			}
-
-			// set new activeKey and select newly active object
+			// set new activeKey
 			activeKey = index;
-			getActive().select();
 		} else {System.out.println("Galaxy.setActive bad argument received");}
 	}
 	
+	public void setActiveById(int id) {
+		// ids are fixed when a node is made, indices shift as merged bodies are removed
+		for (int i=0; i<size(); i++) {
+			if (get(i).getID() == id) {
+				setActive(i);
+				return;
+			}
+		}
+	}
+	
 	public void drawActive(Vector camera, GraphicsContext gc) {
 		
 		// do not do anything if no active object or not renderable
-		if (!hasActive()) {return;}
-		if (!getActive().isRenderable()) {return;}
+		PhysicsNode active = getShownActive();
+		if (active == null) {return;}
+		if (!active.isRenderable()) {return;}
 		
 		// create a new transit animation line from selection to central object
 		// check how it compares with the previous line, to determine
 		// animation settings (doppler shift indicator, dashed line animation setting)
-		Vector v = new Vector(getActive().getXYZ(), get(0).getXYZ());
+		Vector v = new Vector(active.getXYZ(), frame.getNode(0).getXYZ());
 		if (selectionTransit != null) {
 			v.setAnimationModifier(selectionTransit.getAnimationModifier());
 			v.setOldDistance(selectionTransit.getDistance());
@@ -116,7 +206,7 @@ public class Galaxy extends ArrayList<PhysicsNode> {
 		v.drawVectorAnimation(camera, gc);
 		
 		// draw labels on selected objects
-		getActive().drawSelectionVisuals(gc, camera);
+		active.drawSelectionVisuals(gc, camera);
 	}
 	
 	public boolean hasActive() {
@@ -127,6 +217,45 @@ public class Galaxy extends ArrayList<PhysicsNode> {
 	
 	public void resetActive() {setActive(-1);}
 	
+	public int getActiveKey() {return activeKey;}
+	
+	public PhysicsNode getShownActive() {return shownActive;}
+	
+	
+	
+	/* ========================== */
+	/* ===== FRAME HANDLING ===== */
+	/* ========================== */
+	
+	public void showFrame(Snapshot frame) {
+		// move every shape to its published position and color it by temperature
+		this.frame = frame;
+		if (frame.getSequence() == shownSequence) {return;}
+		shownSequence = frame.getSequence();
+		
+		for (int i=0; i<frame.getCount(); i++) {
+			PhysicsNode node = frame.getNode(i);
+			node.moveTo(frame.getX(i), frame.getY(i), frame.getZ(i));
+			node.setColor(Gradient.getColor(frame.getKelvin(i)));
+		}
+		
+		// carry the selection over to this frame's active object
+		PhysicsNode active = frame.getActive() >= 0 ? frame.getNode(frame.getActive()) : null;
+		if (active != shownActive) {
+			if (shownActive != null) {
+				shownActive.deselect();
+			}
+			if (active != null) {
+				active.select();
+			}
+			shownActive = active;
+		}
+	}
+	
+	public Snapshot getFrame() {
+		return frame;
+	}
+	
 	
 	
 	/* ============================== */
@@ -134,80 +263,177 @@ public class Galaxy extends ArrayList<PhysicsNode> {
 	/* ============================== */
 	
 	public void updateAllObjects(boolean isPaused) {
-		
-		// generate centers of mass
-    	stream().forEach(x -> x.getXYZ());
-
-		// if physics are not paused...
-		if (!isPaused) {
-			// apply physical and energy forces
-	    	stream().forEach(x -> x.applyForcesFrom(this));
+		if (replay != null) {
+			// the recorded body count drops where bodies merged, indices are not kept across it
+			replay.advance(isPaused);
+			if (replay.getBodyStore().size() != size()) {
+				resetActive();
+				makeNodes();
+			}
+			return;
 		}
-		
-		// FIXME still do this if isPaused, because space can be contracted, affecting energy
+		simulation.step(isPaused);
+		if (simulation.getMerged() > 0) {
+			remapNodes(simulation.getCollisions());
+		}
+	}
+	
+	private void remapNodes(CollisionEngine collisions) {
+		// keep the node of every surviving body at its new index, drop the rest.
+		// a selection on a merged body moves to the body it merged into
+		int[] remap = collisions.getRemap();
+		PhysicsNode[] kept = new PhysicsNode[simulation.size()];
 		for (int i=0; i<size(); i++) {
-			// update object coloring
-			for (PhysicsNode energysource : getEnergySources()) {
-				get(i).applyTempFrom(energysource);
-			}
-			if (!isPaused) {
-				// apply updates to object positioning
-				get(i).applyAllForces();			
+			if (!collisions.isRemoved(i)) {
+				PhysicsNode node = get(i);
+				node.setIndex(remap[i]);
+				kept[remap[i]] = node;
 			}
 		}
+		if (activeKey >= 0) {
+			activeKey = remap[activeKey];
+		}
+		clear();
+		addAll(Arrays.asList(kept));
+	}
+	
+	public void setDetailThresholds(double cubePixels, double quadPixels) {
+		// bodies at least cubePixels across on screen are cubes, at least quadPixels quads, points below;
+		// a cubePixels of 0 draws every body as a cube
+		this.cubePixels = cubePixels;
+		this.quadPixels = quadPixels;
+	}
+	
+	private static double detailProperty(String name, double fallback) {
+		try {
+			return Double.parseDouble(System.getProperty(name, Double.toString(fallback)));
+		} catch (NumberFormatException e) {
+			System.out.println(name + " is not a number, using " + fallback);
+			return fallback;
+		}
 	}
 	
 	public List<Poly> getPolygons(Vector camera) {
-		List<Poly> allPolygons = new ArrayList<Poly>();
-		for (int i=0; i<size(); i++) {
+		// every renderable polygon, projected and in painter's order, valid until the next call
+		long start = PhaseTimers.start();
+		depthOrder.begin();
+		for (int i=0; i<frame.getCount(); i++) {
+			PhysicsNode node = frame.getNode(i);
 			// TODO temporarily disable rendering objects that contain the camera 
 			//	if (get(i).containsPoint3D(camera.getViewFrom())) {get(i).turnOffThisRenderCycle();}
 			
 			// update and draw if renderable
-			if (get(i).isRenderable()) {
-				for (Poly p : get(i).getPolygons()) {					
+			if (!node.isRenderable()) {continue;}
+			
+			// level of detail from the body's size on screen, the selection always in full
+			double size = node.getSize();
+			double pixels = size * camera.getPixelsPerUnit(frame.getX(i) - size/2, frame.getY(i) - size/2, frame.getZ(i) - size/2);
+			if (pixels >= cubePixels || node == shownActive) {
+				for (Poly p : node.getPolygons()) {					
 					p.update(camera);
-					allPolygons.add(p);
+					depthOrder.add(p);
 				}
+			} else {
+				Poly p = node.getSprite(pixels >= quadPixels ? Poly.QUAD : Poly.POINT, pixels);
+				p.update(camera);
+				depthOrder.add(p);
 			}
 		}
+		PhaseTimers.stop(PhaseTimers.PROJECTION, start);
+
 		// order all polygons
-		try {
-			allPolygons.sort((o1, o2) -> o1.compareTo(o2));			
-		} catch (IllegalArgumentException e) {
-			// catches if avgdist is NaN
-			allPolygons.stream().forEach(x -> System.out.println(x.getDistance()));
-			System.out.println("Galaxy.getPolygons illegalargumentexception caught");
-		}
+		start = PhaseTimers.start();
+		List<Poly> allPolygons = depthOrder.sort();
+		PhaseTimers.stop(PhaseTimers.SORT, start);
 		return allPolygons;
 	}
 
 	
     public void scaleVelocity(double scale) {
-    	stream().forEach(x -> x.velocityMultiplier(scale));
+    	if (blockedByReplay("Changing velocities")) {return;}
+    	simulation.scaleVelocity(scale);
     }
     
 	public void scaleSpace(double scale) {
-    	stream().forEach(x -> x.expandSpaceAroundShape(scale));
+		if (blockedByReplay("Scaling space")) {return;}
+		simulation.scaleSpace(scale);
+	}
+	
+	public double scaleGravity(double scale) {
+		return simulation.scaleGravity(scale);
 	}
 	
 	public void makeStar() {
-		if (hasActive() && !getActive().getType().equals("star")) {
-			getActive().setType("star");
-			energySources.add(getActive());
+		if (blockedByReplay("Igniting a star")) {return;}
+		if (hasActive()) {
+			simulation.makeStar(activeKey);
 		}
 	}
 	
+	public BodyStore getBodyStore() {
+		// the bodies on show, recorded ones while replaying
+		return replay != null ? replay.getBodyStore() : simulation.getBodyStore();
+	}
+	
+	public GravityEngine getGravityEngine() {
+		return simulation.getGravityEngine();
+	}
+	
+	public void setGravityEngine(GravityEngine gravity) {
+		simulation.setGravityEngine(gravity);
+	}
+	
+	public GravityEngine cycleGravityEngine() {
+		return simulation.cycleGravityEngine();
+	}
+	
+	public Integrator getIntegrator() {
+		return simulation.getIntegrator();
+	}
+	
+	public void setIntegrator(Integrator integrator) {
+		simulation.setIntegrator(integrator);
+	}
+	
+	public Integrator cycleIntegrator() {
+		return simulation.cycleIntegrator();
+	}
+	
+	public double getTimeStep() {
+		return simulation.getTimeStep();
+	}
+	
+	public void setTimeStep(double timeStep) {
+		simulation.setTimeStep(timeStep);
+	}
+	
+	public int getParallelism() {
+		return simulation.getParallelism();
+	}
+	
+	public void setParallelism(int parallelism) {
+		simulation.setParallelism(parallelism);
+	}
+	
+	public ForkJoinPool getPool() {
+		return simulation.getPool();
+	}
+	
 	public List<PhysicsNode> getEnergySources() {
-		return energySources;
+		List<PhysicsNode> sources = new ArrayList<PhysicsNode>();
+		if (replay != null) {return sources;} // source indices are the live simulation's
+		for (int s=0; s<simulation.getSourceCount(); s++) {
+			sources.add(get(simulation.getEnergySource(s)));
+		}
+		return sources;
 	}
 	
 	public void scaleEnergy(double scale) {
-		getEnergySources().stream().forEach(x -> x.scaleKelvin(scale));
+		simulation.scaleEnergy(scale);
 	}
 	
 	public void resetEnergy() {
-		getEnergySources().stream().forEach(x -> x.resetKelvin());
+		simulation.resetEnergy();
 	}
 	
 	
@@ -216,73 +442,62 @@ public class Galaxy extends ArrayList<PhysicsNode> {
 	/* ===== TRANSIT RULES AND DRAWING ===== */
 	/* ===================================== */
 	
-    private void newTransits() {
-    	transits.clear();
+    void newTransits() {
+    	// each shown body links to its closest three within TRANSIT_RANGE, see NearestNeighbours
+    	long start = PhaseTimers.start();
+    	int count = frame.getCount();
+    	neighbours.link(frame.getXs(), frame.getYs(), frame.getZs(), count, TRANSIT_RANGE, renderPool);
     	
-    	for (PhysicsNode p1 : this) {
-    		  		
-    		double dist1 = 5.0;
-    		double dist2 = 5.0;
-    		double dist3 = 5.0;
-
-    		PhysicsNode closest1 = null;
-    		PhysicsNode closest2 = null;
-    		PhysicsNode closest3 = null;
-    		
-        	for (PhysicsNode p2 : this) {
-        		if (p1.equals(p2)) {continue;}
-
-        		double newDist = p1.getXYZ().distance(p2.getXYZ());       		
-        		
-        		if (newDist <= dist1 && dist1 > dist2 && dist1 > dist3) {
-        			closest1 = p2;
-        			dist1 = newDist;
-        		} else {
-	        		if (newDist <= dist2 && dist2 > dist3) {
-	        			closest2 = p2;
-	        			dist2 = newDist;
-	        		} else if (newDist <= dist3) {
-	        			closest3 = p2;
-	        			dist3 = newDist;
-	        		}
+    	// buffers only grow, so rebuilds at a steady body count allocate nothing
+    	if (edgeStart.length < count + 1) {
+    		edgeStart = new int[Math.max(count + 1, edgeStart.length * 2)];
+    	}
+    	if (edgeTarget.length < NearestNeighbours.SLOTS * count) {
+    		int capacity = Math.max(NearestNeighbours.SLOTS * count, edgeTarget.length * 2);
+    		edgeTarget = new int[capacity];
+    		edgeDistance = new double[capacity];
+    	}
+    	
+    	int e = 0;
+    	for (int i=0; i<count; i++) {
+    		edgeStart[i] = e;
+        	for (int k=0; k<NearestNeighbours.SLOTS; k++) {
+        		int j = neighbours.getNeighbour(i, k);
+        		if (j >= 0) {
+        			edgeTarget[e] = j;
+        			edgeDistance[e] = neighbours.getDistance(i, k);
+        			e++;
         		}
         	}
-        	
-        	List<Transit> newTransits = new ArrayList<Transit>();
-        	if (closest1!=null) {
-	        	Transit t1 = new Transit(p1, closest1);
-	        	newTransits.add(t1);
-        	}
-        	if (closest2!=null) {
-	        	Transit t2 = new Transit(p1, closest2);
-	        	newTransits.add(t2);
-        	}
-        	if (closest3!=null) {
-	        	Transit t3 = new Transit(p1, closest3);
-	        	newTransits.add(t3);  
-        	}
-        	// add physicsobject and transits to master transits map
-            transits.put(p1, newTransits);
     	}
+    	edgeStart[count] = e;
+    	transitCount = count;
+    	PhaseTimers.stop(PhaseTimers.TRANSITS, start);
     }
     
     public void drawAllTransits(GraphicsContext g, Vector camera) {
-    	// creates new transits only every other refresh, for performance
-    	if (refreshTransits) {
+    	// creates new transits only every other refresh, for performance,
+    	// or at once if the body count changed and the old indices no longer line up
+    	if (refreshTransits || transitCount != frame.getCount()) {
     		newTransits();  
     	}
 		refreshTransits = !refreshTransits;
 
+		// project every body once, rather than once per edge end
+		if (transitXs.length < transitCount) {
+			transitXs = new double[Math.max(transitCount, transitXs.length * 2)];
+			transitYs = new double[transitXs.length];
+		}
+		camera.project(frame.getXs(), frame.getYs(), frame.getZs(), transitCount, transitXs, transitYs);
+
 		g.setLineWidth(1);
 
-		for (int i=0; i<size(); i++) {
-			for (Transit t : transits.get(get(i))) {
-	    		if (t.getDistance()<5.0) {
-	    			// sources and destinations must extend class Node
-		    		Point2D source = camera.toScreenSpace(t.getSource().getXYZ());
-		    		Point2D dest = camera.toScreenSpace(t.getDestination().getXYZ());
-		    		g.setStroke(((Node) t.getSource()).getColor());
-		    		g.strokeLine(source.getX(), source.getY(), dest.getX(), dest.getY());
+		for (int i=0; i<transitCount; i++) {
+			for (int e=edgeStart[i]; e<edgeStart[i+1]; e++) {
+	    		if (edgeDistance[e]<TRANSIT_RANGE) {
+	    			int j = edgeTarget[e];
+		    		g.setStroke(frame.getNode(i).getColor());
+		    		g.strokeLine(transitXs[i], transitYs[i], transitXs[j], transitYs[j]);
 	    		}
 	    	}
 		}		
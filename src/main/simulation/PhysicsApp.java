@@ -3,6 +3,7 @@ package main.simulation;
 import javafx.scene.paint.Color;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.beans.property.BooleanProperty;
@@ -16,6 +17,7 @@ import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.BorderPane;
 import javafx.util.Duration;
+import main.laws.PhaseTimers;
 import main.objects.Poly;
 import main.objects.Node;
 import main.objects.Vector;
@@ -31,11 +33,11 @@ public class PhysicsApp extends BorderPane {
 	
 	private List<Poly> allPolygons = new ArrayList<Poly>(); // polygons to draw in the current frame
 	private Galaxy allObjects = new Galaxy(OBJECT_SEED); // data structure of simulation objects
+	private SimulationThread simulation = new SimulationThread(allObjects); // steps allObjects off the render thread
 	private Vector camera = Vector.defaultCamera(); // camera for drawing perspective
 	private Node aFrame = new Node(60, 60, 0, 9999); // plane of reference that can be drawn
 
 	private BooleanProperty hasTransits = new SimpleBooleanProperty(false); // enables drawing graph edges
-	private boolean pausePhysics = false; // allows pausing the simulation, preventing object updated
 	
 	private Scene scene; // parent application scene
 	private Canvas canvas; // vector graphics canvas
@@ -45,6 +47,7 @@ public class PhysicsApp extends BorderPane {
 		this.scene = scene;
 		setCanvas(scene);
 		setControls(scene);
+		simulation.start();
 		renderCanvas();
 	}
 	
@@ -70,8 +73,9 @@ public class PhysicsApp extends BorderPane {
 		    @Override
 		    public void handle(MouseEvent e) {
 				for (int i=allPolygons.size()-1; i>=0; i--) {
-					if (allPolygons.get(i).contains(e.getX(), e.getY())) {
-						allObjects.setActive(allPolygons.get(i).getShapeNumber());
+					if (allPolygons.get(i).containsScreenPoint(e.getX(), e.getY())) {
+						int shape = allPolygons.get(i).getShapeNumber();
+						submit(g -> g.setActiveById(shape));
 						break;
 					}
 				}
@@ -91,8 +95,8 @@ public class PhysicsApp extends BorderPane {
 		// MUST BE FIRST CAMERA OPERATION - set up viewing angle
 		camera.setPerspective2D(scene);
 		
-		// update all objects
-		allObjects.updateAllObjects(pausePhysics);
+		// show the newest frame published by the simulation thread
+		allObjects.showFrame(simulation.acquire());
 
 		// clear canvas and draw background
 		gc.clearRect(0, 0, getWidth(), getHeight());
@@ -115,15 +119,20 @@ public class PhysicsApp extends BorderPane {
 		}
 
 		// collect polygons to rendering list
-		allPolygons.clear();
-		allPolygons.addAll(allObjects.getPolygons(camera));
-		allPolygons.stream().forEach(p -> p.draw(gc));	
+		allPolygons = allObjects.getPolygons(camera);
+		long start = PhaseTimers.start();
+		for (int i=0; i<allPolygons.size(); i++) {
+			allPolygons.get(i).draw(gc);
+		}
+		PhaseTimers.stop(PhaseTimers.DRAW, start);
 		
 		// if there is a primary selection, draw it
 		allObjects.drawActive(camera, gc);
 		
 		// update information panes in interface
+		start = PhaseTimers.start();
 		gui.refreshInfo(camera, allObjects);
+		PhaseTimers.stop(PhaseTimers.INFO, start);
 				
 		// set timer to re-run this method
 		new Timeline(new KeyFrame(Duration.millis(15), ae -> renderCanvas())).play();	
@@ -132,6 +141,11 @@ public class PhysicsApp extends BorderPane {
 	
 	public Galaxy getGalaxy() {return allObjects;}
 	
+	public SimulationThread getSimulation() {return simulation;}
+	
+	// queue a change to the galaxy, run on the simulation thread between steps
+	public void submit(Consumer<Galaxy> command) {simulation.submit(command);}
+	
 	public Vector getCamera() {return camera;}
 	
 	// toggle the display of a plane along the x and y axis
@@ -147,10 +161,10 @@ public class PhysicsApp extends BorderPane {
 	public void viewFromFront() {camera = new Vector(camera.getFoci(), new Point3D(20, 0, 0));}
 		
 	// pauses the application of forces in the simulation
-	public void pausePhysics() {pausePhysics = !pausePhysics;}
+	public void pausePhysics() {simulation.togglePause();}
 	
 	// deselect any selected objects
-	public void resetActive() {allObjects.resetActive();}
+	public void resetActive() {submit(Galaxy::resetActive);}
 	
 
 }
\ No newline at end of file
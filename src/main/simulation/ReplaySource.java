@@ -0,0 +1,84 @@
+package main.simulation;
+
+import java.io.IOException;
+import main.laws.BodyStore;
+import main.laws.TrajectoryReader;
+
+public class ReplaySource {
+
+	/**Plays a recorded trajectory in place of stepping the physics. Each
+	 * pass moves the playback time by the wall-clock time since the last
+	 * pass, scaled by the play rate, and fills a store of its own from the
+	 * recording at that time. That store is for display only: it has no
+	 * solvers or pool, and the live simulation is left untouched beside it.
+	 * Everything downstream of the store, snapshots, selection and transits,
+	 * works on replayed bodies as it does on live ones.
+	 *
+	 * A rate of 1 shows FRAMES_PER_SECOND recorded frames every second, and
+	 * negative rates play backwards. Playback holds at either end of the
+	 * recording until it is reversed or seeked.
+	 */
+
+	private static final double FRAMES_PER_SECOND = 15; // recorded frames shown per second at rate 1
+
+	private final TrajectoryReader reader;
+	private final BodyStore bodies; // recorded state at the playback time
+	private final double frameSpan; // simulated seconds between recorded frames
+	private double time; // simulated time being shown
+	private double rate = 1; // multiple of normal speed, negative plays backwards
+	private long last = 0; // wall clock at the previous pass (ns), 0 before the first
+
+	public ReplaySource(TrajectoryReader reader) {
+		this.reader = reader;
+		this.bodies = new BodyStore(reader.getCapacity());
+		this.frameSpan = reader.getFrames() > 1 ? (reader.getEndTime() - reader.getStartTime()) / (reader.getFrames() - 1) : 0;
+		this.time = reader.getStartTime();
+	}
+
+	public void advance(boolean isPaused) {
+		long now = System.nanoTime();
+		if (last != 0 && !isPaused) {
+			time += (now - last) / 1e9 * rate * frameSpan * FRAMES_PER_SECOND;
+			time = Math.max(reader.getStartTime(), Math.min(reader.getEndTime(), time));
+		}
+		last = now;
+		reader.read(time, bodies);
+	}
+
+	public BodyStore getBodyStore() {
+		return bodies;
+	}
+
+	public void seek(double fraction) {
+		// jump to a point of the recording, 0 is the first frame and 1 the last
+		fraction = Math.max(0, Math.min(1, fraction));
+		time = reader.getStartTime() + fraction * (reader.getEndTime() - reader.getStartTime());
+	}
+
+	public double getFraction() {
+		double span = reader.getEndTime() - reader.getStartTime();
+		return span > 0 ? (time - reader.getStartTime()) / span : 0;
+	}
+
+	public double getRate() {
+		return rate;
+	}
+
+	public void setRate(double rate) {
+		this.rate = rate;
+	}
+
+	public void reverse() {
+		rate = -rate;
+	}
+
+	public long getStep() {
+		// physics step of the recorded frame at or before the playback time
+		return reader.getFrames() == 0 ? 0 : reader.getStep(reader.frameAt(time));
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+
+}
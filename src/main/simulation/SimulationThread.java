@@ -0,0 +1,115 @@
+package main.simulation;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public class SimulationThread extends Thread {
+
+	/**Steps a Galaxy on its own thread, apart from the JavaFX render loop, so
+	 * a slow physics step never freezes the interface and a slow frame never
+	 * slows the physics. Anything that changes the galaxy is queued here as a
+	 * command and run between steps on this thread.
+	 *
+	 * After each step the galaxy is copied into a Snapshot and published
+	 * through an atomic exchange. The simulation writes into its back buffer,
+	 * the renderer reads its front buffer, and the newest complete frame waits
+	 * in between, so neither side ever locks or waits for the other.
+	 */
+
+	private static final long PAUSED_SLEEP = 10; // ms between passes while physics is paused
+
+	private final Galaxy galaxy;
+	private final Queue<Consumer<Galaxy>> commands = new ConcurrentLinkedQueue<Consumer<Galaxy>>();
+	private final AtomicReference<Snapshot> published; // newest complete frame
+	private Snapshot back = new Snapshot(); // written only by this thread
+	private Snapshot front = new Snapshot(); // read only by the render thread
+
+	private volatile boolean running = true;
+	private volatile int stepsPerSecond = 0; // 0 runs flat out
+	private volatile long stepCount = 0; // physics steps taken since start
+	private volatile boolean paused = false;
+	private long sequence = 0;
+
+	public SimulationThread(Galaxy galaxy) {
+		super("simulation");
+		setDaemon(true);
+		this.galaxy = galaxy;
+
+		// publish the initial state so the first frame has something to draw
+		Snapshot first = new Snapshot();
+		first.capture(galaxy, sequence++, 0);
+		published = new AtomicReference<Snapshot>(first);
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			long start = System.nanoTime();
+			try {
+				Consumer<Galaxy> command;
+				while ((command = commands.poll()) != null) {
+					command.accept(galaxy);
+				}
+
+				galaxy.updateAllObjects(paused);
+				if (!paused) {
+					stepCount++;
+				}
+
+				back.capture(galaxy, sequence++, stepCount);
+				back = published.getAndSet(back);
+			} catch (RuntimeException e) {
+				// keep the simulation alive, a bad command should not stop the physics
+				e.printStackTrace();
+			}
+			pace(start);
+		}
+	}
+
+	private void pace(long start) {
+		// parked rather than slept, so submit() can wake the thread without an interrupt
+		long wait = 0;
+		if (paused) {
+			wait = PAUSED_SLEEP * 1000000L;
+		} else if (stepsPerSecond > 0) {
+			wait = 1000000000L / stepsPerSecond - (System.nanoTime() - start);
+		}
+		if (wait > 0) {
+			LockSupport.parkNanos(this, wait);
+		}
+	}
+
+	public Snapshot acquire() {
+		// take the newest frame if one has been published, otherwise keep the last one
+		if (published.get().getSequence() > front.getSequence()) {
+			front = published.getAndSet(front);
+		}
+		return front;
+	}
+
+	public void submit(Consumer<Galaxy> command) {
+		commands.add(command);
+		LockSupport.unpark(this);
+	}
+
+	public void togglePause() {
+		submit(g -> paused = !paused);
+	}
+
+	public void setStepsPerSecond(int stepsPerSecond) {
+		this.stepsPerSecond = stepsPerSecond;
+	}
+
+	public long getStepCount() {
+		return stepCount;
+	}
+
+	public void shutdown() {
+		running = false;
+		LockSupport.unpark(this);
+	}
+
+}
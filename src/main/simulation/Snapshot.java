@@ -0,0 +1,155 @@
+package main.simulation;
+
+import java.util.Arrays;
+import main.laws.BlockTimestep;
+import main.laws.BodyStore;
+import main.laws.Integrator;
+import main.objects.PhysicsNode;
+
+public class Snapshot {
+
+	/**One published frame of the simulation: positions, temperatures and the
+	 * node behind each body, copied out after a step. The simulation thread
+	 * fills a snapshot it owns and then hands it over whole, so once the
+	 * render thread holds a snapshot nothing else writes to it. Buffers are
+	 * reused and only reallocated when the galaxy grows.
+	 */
+
+	private long sequence = -1; // publication number, increases with every frame
+	private long step; // physics steps taken when the frame was captured
+	private int count;
+	private int active = -1; // index of the selected object, -1 if none
+	private double[] x = new double[0], y = new double[0], z = new double[0];
+	private int[] kelvin = new int[0];
+	private PhysicsNode[] nodes = new PhysicsNode[0];
+
+	// motion and mass of the active object, for the labels that describe it
+	private double activeVx, activeVy, activeVz;
+	private double activeAx, activeAy, activeAz;
+	private double activeMass;
+
+	// block timestep counters of the last macro step, for the solver labels
+	private boolean blockSteps; // whether the integrator was BlockTimestep, the counters are 0 if not
+	private int deepestRung, subSteps, passes;
+	private long savedEvaluations;
+
+	void capture(Galaxy galaxy, long sequence, long step) {
+		BodyStore bodies = galaxy.getBodyStore();
+		count = galaxy.size();
+		if (x.length < count) {
+			int capacity = Math.max(count, x.length * 2);
+			x = new double[capacity];
+			y = new double[capacity];
+			z = new double[capacity];
+			kelvin = new int[capacity];
+			nodes = new PhysicsNode[capacity];
+		}
+		System.arraycopy(bodies.x, 0, x, 0, count);
+		System.arraycopy(bodies.y, 0, y, 0, count);
+		System.arraycopy(bodies.z, 0, z, 0, count);
+		for (int i=0; i<count; i++) {
+			kelvin[i] = (int) bodies.kelvin[i];
+			nodes[i] = galaxy.get(i);
+		}
+		// drop references to nodes that no longer exist
+		Arrays.fill(nodes, count, nodes.length, null);
+
+		this.active = galaxy.hasActive() ? galaxy.getActiveKey() : -1;
+		if (active >= 0 && active < count) {
+			activeVx = bodies.vx[active];
+			activeVy = bodies.vy[active];
+			activeVz = bodies.vz[active];
+			activeAx = bodies.ax[active];
+			activeAy = bodies.ay[active];
+			activeAz = bodies.az[active];
+			activeMass = bodies.mass[active];
+		} else {
+			active = -1;
+		}
+
+		Integrator integrator = galaxy.getIntegrator();
+		blockSteps = integrator instanceof BlockTimestep;
+		if (blockSteps) {
+			BlockTimestep blocks = (BlockTimestep) integrator;
+			deepestRung = blocks.getDeepestRung();
+			subSteps = blocks.getSubSteps();
+			passes = blocks.getPasses();
+			savedEvaluations = blocks.getSavedEvaluations();
+		} else {
+			deepestRung = subSteps = passes = 0;
+			savedEvaluations = 0;
+		}
+		this.sequence = sequence;
+		this.step = step;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getStep() {
+		return step;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public PhysicsNode getNode(int i) {
+		return nodes[i];
+	}
+
+	public double getX(int i) {
+		return x[i];
+	}
+
+	public double getY(int i) {
+		return y[i];
+	}
+
+	public double getZ(int i) {
+		return z[i];
+	}
+
+	public int getKelvin(int i) {
+		return kelvin[i];
+	}
+
+	// the active object's motion, valid while getActive() is not -1
+	public double getActiveVx() {return activeVx;}
+
+	public double getActiveVy() {return activeVy;}
+
+	public double getActiveVz() {return activeVz;}
+
+	public double getActiveAx() {return activeAx;}
+
+	public double getActiveAy() {return activeAy;}
+
+	public double getActiveAz() {return activeAz;}
+
+	public double getActiveMass() {return activeMass;}
+
+	// block timestep counters, valid while isBlockSteps()
+	public boolean isBlockSteps() {return blockSteps;}
+
+	public int getDeepestRung() {return deepestRung;}
+
+	public int getSubSteps() {return subSteps;}
+
+	public int getPasses() {return passes;}
+
+	public long getSavedEvaluations() {return savedEvaluations;}
+
+	// whole position columns for bulk passes, valid up to getCount()
+	double[] getXs() {return x;}
+
+	double[] getYs() {return y;}
+
+	double[] getZs() {return z;}
+
+}